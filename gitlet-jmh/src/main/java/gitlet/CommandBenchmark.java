@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmarks of Gitlet commands on a RepositoryFixture,
+ *  whose parameters (file count, file size and history depth) give the
+ *  size of the repository.  Each measures what its command does after
+ *  parsing its operands, through the same Repository, StagingArea,
+ *  Tree and ObjectStore calls; log is run through Main itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+
+    /** A working file changed since the current commit. */
+    @State(Scope.Thread)
+    public static class Edited {
+        /** Give one file of REPO new contents. */
+        @Setup(Level.Invocation)
+        public void edit(RepositoryFixture repo) {
+            List<String> names = repo.names();
+            _name = names.get(repo.random().nextInt(names.size()));
+            Utils.writeContents(Utils.join(Repository.CWD, _name),
+                                (Object) repo.contents());
+        }
+
+        /** The name of the changed file. */
+        private String _name;
+    }
+
+    /** A changed file staged for addition. */
+    @State(Scope.Thread)
+    public static class Staged {
+        /** Change and stage one file of REPO. */
+        @Setup(Level.Invocation)
+        public void stage(RepositoryFixture repo) {
+            List<String> names = repo.names();
+            String name = names.get(repo.random().nextInt(names.size()));
+            StagingArea stage = Repository.stagingArea(repo.store());
+            stage.add(name, repo.writeFile(name));
+            stage.save(Repository.INDEX);
+        }
+    }
+
+    /** The commits between which checkout moves. */
+    @State(Scope.Thread)
+    public static class Checkout {
+        /** Start at the current commit of REPO. */
+        @Setup(Level.Trial)
+        public void start(RepositoryFixture repo) {
+            _from = repo.head();
+            _to = repo.previous();
+            if (_to == null) {
+                _to = repo.side();
+            }
+        }
+
+        /** UID of the commit checked out. */
+        private ObjectId _from;
+        /** UID of the commit to check out next. */
+        private ObjectId _to;
+    }
+
+    /** The add command, for a file that has changed. */
+    @Benchmark
+    public ObjectId add(RepositoryFixture repo, Edited edited) {
+        ObjectStore store = Repository.objects(new Trace(), new Metrics());
+        StagingArea stage = Repository.stagingArea(store);
+        File file = Utils.join(Repository.CWD, edited._name);
+        ObjectId id = store.writeBlob(file);
+        stage.add(edited._name, id);
+        stage.record(Repository.CWD, edited._name, id);
+        stage.save(Repository.INDEX);
+        return id;
+    }
+
+    /** The commit command, with one file staged. */
+    @Benchmark
+    public ObjectId commit(RepositoryFixture repo, Staged staged) {
+        StagingArea stage = Repository.stagingArea(repo.store());
+        ObjectId parentId = Repository.headCommitId();
+        Commit parent = Repository.readCommit(repo.store(), parentId);
+        Map<String, ObjectId> changes = new TreeMap<>(stage.getAdded());
+        for (String name : stage.getRemoved()) {
+            changes.put(name, null);
+        }
+        ObjectId tree = Tree.write(repo.store(), parent.getTree(), changes);
+        ObjectId id = Repository.saveCommit(repo.store(),
+            new Commit("benchmark", new Date(),
+                       List.of(parentId), tree));
+        Repository.writeRef(repo.store(), Repository.HEAD, id);
+        stage.clear();
+        stage.save(Repository.INDEX);
+        return id;
+    }
+
+    /** The status command on a clean working directory. */
+    @Benchmark
+    public Object status(RepositoryFixture repo) {
+        StagingArea stage = Repository.stagingArea(repo.store());
+        Commit head = Repository.readCommit(repo.store(),
+                                            Repository.headCommitId());
+        Map<String, ObjectId> tracked =
+            Tree.flatten(repo.store(), head.getTree());
+        List<String> files =
+            Utils.plainFilenamesUnder(Repository.CWD, ".gitlet");
+        Map<String, String> unstaged =
+            stage.unstagedChanges(Repository.CWD, files, tracked,
+                                  Repository.scanner(), repo.store());
+        Set<String> untracked = stage.untrackedFiles(files, tracked);
+        stage.save(Repository.INDEX);
+        return List.of(unstaged, untracked);
+    }
+
+    /** A checkout between the current commit and its parent, in
+     *  alternate directions. */
+    @Benchmark
+    public ObjectId checkout(Checkout state) {
+        ObjectStore store = Repository.objects(new Trace(), new Metrics());
+        Repository.checkoutCommit(store, state._from, state._to);
+        Repository.writeRef(store, Repository.HEAD, state._to);
+        ObjectId done = state._to;
+        state._to = state._from;
+        state._from = done;
+        return done;
+    }
+
+    /** The log command, printing the whole history. */
+    @Benchmark
+    public void log() {
+        Main.run(new String[] { "log" });
+    }
+
+    /** The log command, printing the first ten entries. */
+    @Benchmark
+    public void logPage() {
+        Main.run(new String[] { "log", "-n", "10" });
+    }
+
+    /** The part of merging the side branch into the current commit that
+     *  precedes writing files: finding the split point, the changes on
+     *  each side, and the line-level differences of files changed on
+     *  both.  Returns the number of such files. */
+    @Benchmark
+    public int merge(RepositoryFixture repo) {
+        ObjectStore store = repo.store();
+        ObjectId head = Repository.headCommitId();
+        ObjectId split = Repository.splitPoint(store, head, repo.side());
+        ObjectId base = Repository.readCommit(store, split).getTree();
+        TreeMap<String, Tree.Change> ours = new TreeMap<>();
+        for (Tree.Change change
+                 : Tree.diff(store, base,
+                             Repository.readCommit(store, head).getTree(),
+                             null)) {
+            ours.put(change.getPath(), change);
+        }
+        int result = 0;
+        for (Tree.Change theirs
+                 : Tree.diff(store, base,
+                             Repository.readCommit(store, repo.side())
+                             .getTree(),
+                             null)) {
+            Tree.Change mine = ours.get(theirs.getPath());
+            if (mine == null || mine.getAfter() == null
+                || theirs.getAfter() == null
+                || mine.getAfter().equals(theirs.getAfter())) {
+                continue;
+            }
+            List<String> original =
+                Diff.lines(store.read(theirs.getBefore()));
+            List<String> a = Diff.lines(store.read(mine.getAfter()));
+            List<String> b =
+                Diff.lines(store.read(theirs.getAfter()));
+            new Diff(original, a).myers();
+            new Diff(original, b).myers();
+            result += 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks comparing Commit's binary encoding with Java
+ *  serialization: encoding and decoding a linear history of COMMITS
+ *  commits, each with a new root tree.  The encoded sizes are printed
+ *  once per fork when the history is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommitCodecBenchmark {
+
+    /** Number of commits in the history. */
+    @Param({ "10000" })
+    public int commits;
+
+    /** Build the history and both encodings of it. */
+    @Setup(Level.Trial)
+    public void create() {
+        Random random = new Random(commits);
+        List<ObjectId> parents = new ArrayList<>();
+        for (int k = 0; k < commits; k += 1) {
+            byte[] tree = new byte[ObjectId.BYTES];
+            random.nextBytes(tree);
+            Commit c = new Commit("Commit number " + k, new Date(k * 1000L),
+                                  parents, ObjectId.fromBytes(tree, 0));
+            _history.add(c);
+            _binary.add(c.encode());
+            _serialized.add(Utils.serialize(c));
+            parents = List.of(ObjectId.fromHex(Utils.sha1(c.encode())));
+        }
+        System.out.printf("%nbinary %d B/commit, serialization %d B/commit%n",
+                          totalSize(_binary) / commits,
+                          totalSize(_serialized) / commits);
+    }
+
+    /** Commit.encode of the whole history. */
+    @Benchmark
+    public List<byte[]> encodeBinary() {
+        List<byte[]> result = new ArrayList<>(commits);
+        for (Commit c : _history) {
+            result.add(c.encode());
+        }
+        return result;
+    }
+
+    /** Commit.parse of the whole history. */
+    @Benchmark
+    public List<Commit> decodeBinary() {
+        List<Commit> result = new ArrayList<>(commits);
+        for (byte[] bytes : _binary) {
+            result.add(Commit.parse(bytes));
+        }
+        return result;
+    }
+
+    /** Utils.serialize of the whole history. */
+    @Benchmark
+    public List<byte[]> encodeSerialization() {
+        List<byte[]> result = new ArrayList<>(commits);
+        for (Commit c : _history) {
+            result.add(Utils.serialize(c));
+        }
+        return result;
+    }
+
+    /** Utils.deserialize of the whole history. */
+    @Benchmark
+    public List<Commit> decodeSerialization() {
+        List<Commit> result = new ArrayList<>(commits);
+        for (byte[] bytes : _serialized) {
+            result.add(Utils.deserialize(bytes, Commit.class));
+        }
+        return result;
+    }
+
+    /** Returns the total length of the arrays in ENCODED. */
+    private static long totalSize(List<byte[]> encoded) {
+        long result = 0;
+        for (byte[] bytes : encoded) {
+            result += bytes.length;
+        }
+        return result;
+    }
+
+    /** The history, oldest commit first. */
+    private final List<Commit> _history = new ArrayList<>();
+    /** The binary encodings of the commits in _history. */
+    private final List<byte[]> _binary = new ArrayList<>();
+    /** The serialized forms of the commits in _history. */
+    private final List<byte[]> _serialized = new ArrayList<>();
+}
@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of both Diff algorithms comparing a text of LINES lines
+ *  with a copy changed by EDITS scattered edits, each inserting,
+ *  deleting or replacing up to MAX_EDIT lines.  With a REPEATED of 0 the
+ *  lines are mostly distinct, as in source code; otherwise they are
+ *  drawn from REPEATED choices, where Myers' algorithm does worst.  Run
+ *  with "-prof gc" to see the memory each comparison allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DiffBenchmark {
+
+    /** Largest number of lines changed by one edit. */
+    static final int MAX_EDIT = 5;
+
+    /** Number of lines in each text. */
+    @Param({ "10000", "1000000" })
+    public int lines;
+    /** Number of edits. */
+    @Param({ "1000" })
+    public int edits;
+    /** Number of distinct lines, or 0 for lines that are all
+     *  distinct. */
+    @Param({ "0", "4" })
+    public int repeated;
+
+    /** Build the two texts. */
+    @Setup(Level.Trial)
+    public void create() {
+        Random random = new Random(lines);
+        for (int k = 0; k < lines; k += 1) {
+            _a.add(line(random));
+        }
+        _b.addAll(_a);
+        for (int k = 0; k < edits && !_b.isEmpty(); k += 1) {
+            int at = random.nextInt(_b.size());
+            int removed = Math.min(random.nextInt(MAX_EDIT + 1),
+                                   _b.size() - at);
+            int added = random.nextInt(MAX_EDIT + 1);
+            _b.subList(at, at + removed).clear();
+            for (int j = 0; j < added; j += 1) {
+                _b.add(at, line(random));
+            }
+        }
+    }
+
+    /** Diff.myers of the two texts. */
+    @Benchmark
+    public List<Diff.Edit> myers() {
+        return new Diff(_a, _b).myers();
+    }
+
+    /** Diff.histogram of the two texts. */
+    @Benchmark
+    public List<Diff.Edit> histogram() {
+        return new Diff(_a, _b).histogram();
+    }
+
+    /** Returns a random line generated using RANDOM, drawn from REPEATED
+     *  choices if REPEATED is not 0. */
+    private String line(Random random) {
+        if (repeated == 0) {
+            return "    value = compute(" + random.nextLong() + ");\n";
+        }
+        return "line " + random.nextInt(repeated) + "\n";
+    }
+
+    /** The original text. */
+    private final List<String> _a = new ArrayList<>();
+    /** The edited text. */
+    private final List<String> _b = new ArrayList<>();
+}
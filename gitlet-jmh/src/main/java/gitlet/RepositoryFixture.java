@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** A Gitlet repository built for a benchmark: FILES files of FILESIZE
+ *  bytes each, in directories of DIRECTORY_SIZE files, with a history
+ *  of DEPTH commits on the current branch, each changing CHURN percent
+ *  of the files (at least one), and a side branch of SIDE_COMMITS
+ *  commits leaving it halfway, for merges.  The working directory holds
+ *  the files of the current commit, and the staging area has their stat
+ *  data cached, as after a checkout.
+ *
+ *  The repository is made in a new temporary directory, which becomes
+ *  Gitlet's working directory by setting user.dir before Repository is
+ *  first used.  Each JMH fork is a new JVM, so every trial gets its own
+ *  repository; the benchmarks cannot run with forking disabled.
+ */
+@State(Scope.Benchmark)
+public class RepositoryFixture {
+
+    /** Number of files in each directory. */
+    static final int DIRECTORY_SIZE = 100;
+    /** Percentage of the files changed by each commit. */
+    static final int CHURN = 1;
+    /** Number of commits on the side branch. */
+    static final int SIDE_COMMITS = 5;
+    /** Length of the lines of generated files, with their newline. */
+    static final int LINE_LENGTH = 64;
+
+    /** Number of files tracked. */
+    @Param({ "100", "10000" })
+    public int files;
+    /** Size of each file in bytes. */
+    @Param({ "256", "16384" })
+    public int fileSize;
+    /** Number of commits on the current branch. */
+    @Param({ "10", "1000" })
+    public int depth;
+
+    /** Build the repository. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-jmh");
+        System.setProperty("user.dir", _dir.toString());
+        if (!Repository.CWD.toPath().equals(_dir)) {
+            throw new IllegalStateException("Repository used before setup; "
+                                            + "benchmarks must be forked");
+        }
+        Repository.GITLET_DIR.mkdirs();
+        _store = Repository.objects(new Trace(), new Metrics());
+        _random = new Random(files * 31L + fileSize * 17L + depth);
+        TreeMap<String, ObjectId> all = new TreeMap<>();
+        for (int k = 0; k < files; k += 1) {
+            _names.add(String.format("d%d/f%d.txt", k / DIRECTORY_SIZE, k));
+        }
+        for (String name : _names) {
+            all.put(name, writeFile(name));
+        }
+        ObjectId tree = Tree.write(_store, null, all);
+        ObjectId head = Repository.saveCommit(_store,
+            new Commit("initial commit", new Date(0), List.of(), tree));
+        for (int c = 1; c < depth; c += 1) {
+            if (c == depth / 2) {
+                _side = branch(head, tree, SIDE_COMMITS);
+            }
+            _previous = head;
+            tree = Tree.write(_store, tree, churn());
+            head = Repository.saveCommit(_store,
+                new Commit("commit " + c, new Date(c * 1000L),
+                           List.of(head), tree));
+        }
+        if (_side == null) {
+            _side = branch(head, tree, SIDE_COMMITS);
+        }
+        _head = head;
+        _tree = tree;
+        Repository.writeRef(_store, Repository.HEAD, head);
+        StagingArea stage = Repository.stagingArea(_store);
+        stage.blobIds(Repository.CWD, _names, Repository.scanner(), _store);
+        stage.save(Repository.INDEX);
+        _stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /** Delete the repository. */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        System.setOut(_stdout);
+        try (Stream<Path> paths = Files.walk(_dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+
+    /** Returns the changes of one commit: new contents for CHURN percent
+     *  of the files, which are written to the working directory and the
+     *  object store. */
+    Map<String, ObjectId> churn() {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        int n = Math.max(1, files * CHURN / 100);
+        for (int k = 0; k < n; k += 1) {
+            String name = _names.get(_random.nextInt(files));
+            result.put(name, writeFile(name));
+        }
+        return result;
+    }
+
+    /** Returns the UID of the last of N commits made on a branch from
+     *  the commit with UID FROM, whose tree has UID TREE.  The working
+     *  directory is restored to the files of FROM afterwards. */
+    private ObjectId branch(ObjectId from, ObjectId tree, int n) {
+        ObjectId result = from;
+        Map<String, ObjectId> original = Tree.flatten(_store, tree);
+        TreeMap<String, ObjectId> changed = new TreeMap<>();
+        for (int k = 0; k < n; k += 1) {
+            Map<String, ObjectId> changes = churn();
+            changed.putAll(changes);
+            tree = Tree.write(_store, tree, changes);
+            result = Repository.saveCommit(_store,
+                new Commit("side " + k, new Date(k * 1000L + 500),
+                           List.of(result), tree));
+        }
+        for (String name : changed.keySet()) {
+            _store.copyTo(original.get(name),
+                          Utils.join(Repository.CWD, name));
+        }
+        return result;
+    }
+
+    /** Write new random contents to the working file NAME, store them,
+     *  and return their blob UID. */
+    ObjectId writeFile(String name) {
+        File file = Utils.join(Repository.CWD, name);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, (Object) contents());
+        return _store.writeBlob(file);
+    }
+
+    /** Returns FILESIZE bytes of random text, in lines of LINE_LENGTH. */
+    byte[] contents() {
+        byte[] result = new byte[fileSize];
+        for (int k = 0; k < result.length; k += 1) {
+            if (k % LINE_LENGTH == LINE_LENGTH - 1) {
+                result[k] = '\n';
+            } else {
+                result[k] = (byte) ('a' + _random.nextInt(26));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the names of the tracked files. */
+    List<String> names() {
+        return _names;
+    }
+
+    /** Returns the object store. */
+    ObjectStore store() {
+        return _store;
+    }
+
+    /** Returns the random source used to build the repository. */
+    Random random() {
+        return _random;
+    }
+
+    /** Returns the UID of the current commit. */
+    ObjectId head() {
+        return _head;
+    }
+
+    /** Returns the UID of the first parent of the current commit, or
+     *  null if it has none. */
+    ObjectId previous() {
+        return _previous;
+    }
+
+    /** Returns the UID of the head of the side branch. */
+    ObjectId side() {
+        return _side;
+    }
+
+    /** Returns the UID of the current commit's tree. */
+    ObjectId tree() {
+        return _tree;
+    }
+
+    /** The directory holding the repository. */
+    private Path _dir;
+    /** The object store. */
+    private ObjectStore _store;
+    /** Source of file contents and choices. */
+    private Random _random;
+    /** Names of the tracked files. */
+    private final List<String> _names = new ArrayList<>();
+    /** UID of the current commit. */
+    private ObjectId _head;
+    /** UID of the first parent of the current commit. */
+    private ObjectId _previous;
+    /** UID of the head of the side branch. */
+    private ObjectId _side;
+    /** UID of the tree of the current commit. */
+    private ObjectId _tree;
+    /** The standard output replaced while benchmarks run. */
+    private PrintStream _stdout;
+}
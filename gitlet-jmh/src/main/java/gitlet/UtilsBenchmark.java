@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the Utils methods on which every command depends:
+ *  hashing contents of FILESIZE bytes, serializing and reading back a
+ *  map of FILES entries (as a Serializable index or commit would be),
+ *  and listing a directory of FILES files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    /** Number of files listed and of map entries serialized. */
+    @Param({ "100", "10000" })
+    public int files;
+    /** Size of the contents hashed, in bytes. */
+    @Param({ "256", "16384", "1048576" })
+    public int fileSize;
+
+    /** Create the contents, map and directory. */
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        Random random = new Random(files + fileSize);
+        _contents = new byte[fileSize];
+        random.nextBytes(_contents);
+        _dir = Files.createTempDirectory("gitlet-jmh").toFile();
+        for (int k = 0; k < files; k += 1) {
+            byte[] id = new byte[ObjectId.BYTES];
+            random.nextBytes(id);
+            _map.put("file" + k + ".txt", ObjectId.fromBytes(id, 0).toHex());
+            Utils.writeContents(Utils.join(_dir, "file" + k + ".txt"),
+                                Integer.toString(k));
+        }
+        _mapFile = new File(_dir.getPath() + ".map");
+        Utils.writeObject(_mapFile, _map);
+    }
+
+    /** Delete the directory. */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        _mapFile.delete();
+        try (Stream<Path> paths = Files.walk(_dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+
+    /** Utils.sha1 of FILESIZE bytes. */
+    @Benchmark
+    public String sha1() {
+        return Utils.sha1(_contents);
+    }
+
+    /** Utils.serialize of a map of FILES entries. */
+    @Benchmark
+    public byte[] serialize() {
+        return Utils.serialize(_map);
+    }
+
+    /** Utils.readObject of a map of FILES entries. */
+    @Benchmark
+    public TreeMap<?, ?> readObject() {
+        return Utils.readObject(_mapFile, TreeMap.class);
+    }
+
+    /** Utils.plainFilenamesIn on a directory of FILES files. */
+    @Benchmark
+    public List<String> plainFilenamesIn() {
+        return Utils.plainFilenamesIn(_dir);
+    }
+
+    /** Random contents to hash. */
+    private byte[] _contents;
+    /** A map from file names to UIDs. */
+    private final TreeMap<String, String> _map = new TreeMap<>();
+    /** The directory of files listed. */
+    private File _dir;
+    /** The file holding _map, serialized. */
+    private File _mapFile;
+}
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** The changes to a working tree that take it from the files tracked by
+ *  one commit to those tracked by another: the files to write (added or
+ *  changed) and the files to delete.  Files whose blob is the same in
+ *  both commits are left alone, so the cost of a checkout or reset
+ *  depends on how much the commits differ, not on how many files they
+ *  track.
+ *
+ *  The plan is made from Tree.diff of the two commits' root trees, which
+ *  skips every directory whose tree is shared by both commits without
+ *  reading it.
+ */
+class CheckoutPlan {
+
+    /** The plan for carrying out the file changes CHANGES, as returned by
+     *  Tree.diff. */
+    CheckoutPlan(List<Tree.Change> changes) {
+        for (Tree.Change change : changes) {
+            if (change.getAfter() == null) {
+                _deletes.add(change.getPath());
+                continue;
+            }
+            _writes.add(change.getPath());
+            _targets.add(change.getAfter());
+            if (change.getBefore() == null) {
+                _added.add(change.getPath());
+            }
+        }
+    }
+
+    /** Returns the names of the files to be written, in order. */
+    List<String> writes() {
+        return Collections.unmodifiableList(_writes);
+    }
+
+    /** Returns the names of the files to be deleted, in order. */
+    List<String> deletes() {
+        return Collections.unmodifiableList(_deletes);
+    }
+
+    /** Returns the names of the files, among those to be written, that
+     *  the source commit does not track.  Only these can overwrite an
+     *  untracked working file. */
+    List<String> added() {
+        return Collections.unmodifiableList(_added);
+    }
+
+    /** Returns the paths, relative to the working directory DIR, of the
+     *  files there that carrying out this plan could clobber unless the
+     *  source commit tracks them (in which case the plan deletes or
+     *  overwrites them as intended): plain files at the paths of added
+     *  files, the files under a directory at a path to be written (or
+     *  the directory itself, if it holds none), and plain files where a
+     *  directory must be made to hold a file to be written.  Only the
+     *  paths the plan writes, and their parents, are looked at. */
+    List<String> obstacles(File dir) {
+        TreeSet<String> result = new TreeSet<>();
+        Set<String> added = new HashSet<>(_added);
+        Set<String> parents = new HashSet<>();
+        for (String name : _writes) {
+            File file = join(dir, name);
+            if (file.isDirectory()) {
+                List<String> inside = plainFilenamesUnder(file, null);
+                if (inside.isEmpty()) {
+                    result.add(name);
+                }
+                for (String path : inside) {
+                    result.add(name + "/" + path);
+                }
+            } else if (file.isFile() && added.contains(name)) {
+                result.add(name);
+            }
+            for (int k = name.lastIndexOf('/'); k > 0
+                     && parents.add(name.substring(0, k));
+                 k = name.lastIndexOf('/', k - 1)) {
+                if (join(dir, name.substring(0, k)).isFile()) {
+                    result.add(name.substring(0, k));
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Returns true iff the plan changes nothing. */
+    boolean isEmpty() {
+        return _writes.isEmpty() && _deletes.isEmpty();
+    }
+
+    /** Carry out this plan on the working directory DIR, copying blobs
+     *  from STORE and recording the stat data of the files written in
+     *  STAGE, so that they need not be rehashed later.  Deletions come
+     *  first, removing directories they leave empty, so that a file may
+     *  replace a directory of the same name and vice versa. */
+    void apply(File dir, ObjectStore store, StagingArea stage) {
+        for (String name : _deletes) {
+            File file = join(dir, name);
+            file.delete();
+            for (File parent = file.getParentFile(); !parent.equals(dir)
+                     && parent.delete(); parent = parent.getParentFile()) {
+                continue;
+            }
+        }
+        for (int k = 0; k < _writes.size(); k += 1) {
+            String name = _writes.get(k);
+            File file = join(dir, name);
+            file.getParentFile().mkdirs();
+            store.copyTo(_targets.get(k), file);
+            stage.record(dir, name, _targets.get(k));
+        }
+    }
+
+    /** Names of the files to be written. */
+    private final List<String> _writes = new ArrayList<>();
+    /** Blob UIDs of the files to be written, parallel to _writes. */
+    private final List<ObjectId> _targets = new ArrayList<>();
+    /** Names of the files to be written that the source does not
+     *  track. */
+    private final List<String> _added = new ArrayList<>();
+    /** Names of the files to be deleted. */
+    private final List<String> _deletes = new ArrayList<>();
+}
@@ -0,0 +1,151 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of making and carrying out CheckoutPlans. */
+public class CheckoutPlanTest {
+
+    /** Directories holding the store and working tree of each test. */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Make an empty store, working directory and staging area. */
+    @Before
+    public void setUp() throws IOException {
+        _store = new ObjectStore(tmp.newFolder("objects"));
+        _dir = tmp.newFolder("work");
+        _stage = StagingArea.load(new File(tmp.getRoot(), "index"),
+                                  new Metrics());
+    }
+
+    /** Returns the UID of a tree holding FILES, given as alternating
+     *  paths and contents. */
+    private ObjectId tree(String... files) {
+        Map<String, ObjectId> changes = new TreeMap<>();
+        for (int k = 0; k < files.length; k += 2) {
+            changes.put(files[k], _store.write(
+                files[k + 1].getBytes(StandardCharsets.UTF_8)));
+        }
+        return Tree.write(_store, null, changes);
+    }
+
+    /** Make the working directory hold the files of tree ID. */
+    private void checkOut(ObjectId id) {
+        new CheckoutPlan(Tree.diff(_store, tree(), id, null))
+            .apply(_dir, _store, _stage);
+    }
+
+    /** Returns the plan for going from tree FROM to tree TO. */
+    private CheckoutPlan plan(ObjectId from, ObjectId to) {
+        return new CheckoutPlan(Tree.diff(_store, from, to, null));
+    }
+
+    /** Assert that the working directory holds exactly the files of tree
+     *  ID. */
+    private void assertHolds(ObjectId id) {
+        TreeMap<String, ObjectId> expected = Tree.flatten(_store, id);
+        assertEquals(expected.keySet(),
+                     new TreeSet<>(Utils.plainFilenamesUnder(_dir,
+                                                             ".gitlet")));
+        for (Map.Entry<String, ObjectId> file : expected.entrySet()) {
+            assertArrayEquals(file.getKey(), _store.read(file.getValue()),
+                              Utils.readContents(Utils.join(_dir,
+                                                            file.getKey())));
+        }
+    }
+
+    @Test
+    public void changesOnlyDifferingFiles() {
+        ObjectId from = tree("a.txt", "a", "b.txt", "b", "d/c.txt", "c");
+        ObjectId to = tree("a.txt", "a", "b.txt", "B", "d/e.txt", "e");
+        CheckoutPlan plan = plan(from, to);
+        assertEquals(List.of("b.txt", "d/e.txt"), plan.writes());
+        assertEquals(List.of("d/c.txt"), plan.deletes());
+        assertEquals(List.of("d/e.txt"), plan.added());
+        assertTrue(plan(to, to).isEmpty());
+        checkOut(from);
+        File unchanged = Utils.join(_dir, "a.txt");
+        assertTrue(unchanged.setLastModified(1000));
+        plan.apply(_dir, _store, _stage);
+        assertHolds(to);
+        assertEquals(1000, unchanged.lastModified());
+    }
+
+    @Test
+    public void fileReplacesDirectory() {
+        ObjectId from = tree("a/b/c.txt", "c", "a/d.txt", "d", "x.txt", "x");
+        ObjectId to = tree("a", "now a file", "x.txt", "x");
+        checkOut(from);
+        plan(from, to).apply(_dir, _store, _stage);
+        assertHolds(to);
+        assertTrue(Utils.join(_dir, "a").isFile());
+    }
+
+    @Test
+    public void directoryReplacesFile() {
+        ObjectId from = tree("a", "a file", "x.txt", "x");
+        ObjectId to = tree("a/b/c.txt", "c", "x.txt", "x");
+        checkOut(from);
+        plan(from, to).apply(_dir, _store, _stage);
+        assertHolds(to);
+        assertTrue(Utils.join(_dir, "a").isDirectory());
+    }
+
+    @Test
+    public void deletesEmptiedDirectoriesOnly() {
+        ObjectId from = tree("a/b/c.txt", "c", "a/d.txt", "d",
+                             "e/f/g.txt", "g");
+        ObjectId to = tree("a/d.txt", "d");
+        checkOut(from);
+        plan(from, to).apply(_dir, _store, _stage);
+        assertHolds(to);
+        assertFalse(Utils.join(_dir, "a", "b").exists());
+        assertFalse(Utils.join(_dir, "e").exists());
+        assertTrue(Utils.join(_dir, "a").isDirectory());
+        assertTrue(_dir.isDirectory());
+    }
+
+    @Test
+    public void findsObstacles() {
+        ObjectId from = tree("x.txt", "x", "d/c.txt", "c");
+        ObjectId to = tree("x.txt", "X", "d", "now a file", "a/b.txt", "b",
+                           "n.txt", "n", "e", "e");
+        CheckoutPlan plan = plan(from, to);
+        checkOut(from);
+        List<String> obstacles = plan.obstacles(_dir);
+        assertEquals(List.of("d/c.txt"), obstacles);
+        assertTrue(_stage.untrackedFiles(obstacles,
+                                         Tree.flatten(_store, from))
+                   .isEmpty());
+        Utils.writeContents(Utils.join(_dir, "a"), "untracked");
+        Utils.writeContents(Utils.join(_dir, "n.txt"), "untracked");
+        Utils.writeContents(Utils.join(_dir, "d", "u.txt"), "untracked");
+        assertTrue(Utils.join(_dir, "e").mkdir());
+        obstacles = plan.obstacles(_dir);
+        assertEquals(List.of("a", "d/c.txt", "d/u.txt", "e", "n.txt"),
+                     obstacles);
+        assertEquals(new TreeSet<>(List.of("a", "d/u.txt", "e", "n.txt")),
+                     _stage.untrackedFiles(obstacles,
+                                           Tree.flatten(_store, from)));
+    }
+
+    /** The store holding the trees and blobs. */
+    private ObjectStore _store;
+    /** The working directory. */
+    private File _dir;
+    /** The staging area recording files written. */
+    private StagingArea _stage;
+}
@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/** A thin client for a Gitlet Server, whose main program may be invoked
+ *  in place of gitlet.Main:
+ *      java gitlet.Client ARGS
+ *  It forwards ARGS to the server for the repository in the current
+ *  directory, copies the output of the command to its own standard
+ *  output and standard error, and exits with the command's status.  If
+ *  no server is running, it runs the command itself through Main.main,
+ *  so the output is the same either way.
+ */
+public class Client {
+
+    /** Run the command ARGS, through the server if there is one. */
+    public static void main(String... args) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(Server.address());
+        } catch (IOException excp) {
+            Main.main(args);
+            return;
+        }
+        int status;
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            status = relay(new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), Utils.BUFFER_SIZE)));
+        } catch (IOException excp) {
+            System.err.println("gitlet: lost connection to server: "
+                               + excp.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /** Copy the frames of a response read from IN to standard output and
+     *  standard error, and return the exit status that ends it. */
+    private static int relay(DataInputStream in) throws IOException {
+        byte[] buffer = new byte[Utils.BUFFER_SIZE];
+        while (true) {
+            int kind = in.readByte();
+            if (kind == Server.EXIT) {
+                System.out.flush();
+                System.err.flush();
+                return in.readInt();
+            }
+            PrintStream dest = System.out;
+            if (kind == Server.STDERR) {
+                dest = System.err;
+            }
+            for (int len = in.readInt(); len > 0;) {
+                int n = in.read(buffer, 0, Math.min(len, buffer.length));
+                if (n < 0) {
+                    throw new IOException("truncated response");
+                }
+                dest.write(buffer, 0, n);
+                len -= n;
+            }
+        }
+    }
+
+    /** Returns true iff a server is accepting connections for the
+     *  repository in the current directory. */
+    static boolean isServing() {
+        try (SocketChannel channel = SocketChannel.open(Server.address())) {
+            return channel.isConnected();
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+}
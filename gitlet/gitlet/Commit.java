@@ -1,26 +1,175 @@
 package gitlet;
 
-// TODO: any imports you need here
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
-import java.util.Date; // TODO: You'll likely use this in this class
+import static gitlet.Utils.*;
 
 /** Represents a gitlet commit object.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
+ *  A commit records a log message, a timestamp, the UIDs of its parent
+ *  commits (none for the initial commit, two for a merge) and the UID of
+ *  the root Tree of the files it tracks.
+ *  Commits are immutable once made and are kept in an ObjectStore under
+ *  the UID of their stored form.
+ *
+ *  Commits are stored in a compact binary encoding rather than with Java
+ *  serialization, which spends most of a small commit's bytes on class
+ *  descriptors and is slow to decode reflectively.  The encoding is
+ *      MAGIC (int), VERSION (byte),
+ *      message (int byte count, then UTF-8 bytes),
+ *      timestamp (long, milliseconds since the epoch),
+ *      parent count (byte), each parent as a 20-byte binary UID,
+ *      root tree as a 20-byte binary UID.
+ *  Being canonical, the encoding also gives equal commits equal UIDs.
+ *  In memory, UIDs are held as ObjectIds.
  *
  *  @author TODO
  */
-public class Commit {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Commit class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided one example for `message`.
-     */
+public class Commit implements Dumpable {
+
+    /** Magic number at the start of an encoded Commit ("GCMT"). */
+    static final int MAGIC = 0x47434d54;
+    /** Version of the encoding. */
+    static final int VERSION = 2;
+    /** Version of this class for Java serialization (see Dumpable). */
+    private static final long serialVersionUID = 1L;
+
+    /** A new commit with message MESSAGE made at TIMESTAMP, whose parents
+     *  have UIDs PARENTS (first parent first) and which tracks the files
+     *  in the Tree with UID TREE. */
+    Commit(String message, Date timestamp, List<ObjectId> parents,
+           ObjectId tree) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.parents = new ArrayList<>(parents);
+        this.tree = tree;
+    }
+
+    /** Returns the message of this Commit. */
+    String getMessage() {
+        return message;
+    }
+
+    /** Returns the time at which this Commit was made. */
+    Date getTimestamp() {
+        return timestamp;
+    }
+
+    /** Returns the UIDs of the parents of this Commit, first parent
+     *  first. */
+    List<ObjectId> getParents() {
+        return Collections.unmodifiableList(parents);
+    }
+
+    /** Returns the UID of the root Tree of the tracked files. */
+    ObjectId getTree() {
+        return tree;
+    }
+
+    /** Store this Commit in STORE and return its UID. */
+    ObjectId save(ObjectStore store) {
+        return store.write(encode());
+    }
+
+    /** Returns the Commit with UID ID in STORE. */
+    static Commit load(ObjectStore store, ObjectId id) {
+        Commit result = parse(store.read(id));
+        if (result == null) {
+            throw new IllegalArgumentException("not a commit: " + id);
+        }
+        return result;
+    }
+
+    /** Returns the Commit with UID ID in STORE, or null if that object is
+     *  not a commit.  Only the first few bytes of any other object are
+     *  decoded, so large blobs cost next to nothing to pass over. */
+    static Commit loadIfCommit(ObjectStore store, ObjectId id) {
+        ByteBuffer prefix =
+            ByteBuffer.wrap(store.readPrefix(id, Integer.BYTES + 1));
+        if (prefix.remaining() < Integer.BYTES + 1
+            || prefix.getInt() != MAGIC || prefix.get() != VERSION) {
+            return null;
+        }
+        return parse(store.read(id));
+    }
+
+    /** Returns the binary encoding of this Commit. */
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            out.writeLong(timestamp.getTime());
+            out.writeByte(parents.size());
+            for (ObjectId parent : parents) {
+                parent.write(out);
+            }
+            tree.write(out);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw error("Internal error serializing commit.");
+        }
+    }
+
+    /** Returns the Commit whose stored form is CONTENTS, or null if
+     *  CONTENTS is not an encoded Commit (for example, if it is a
+     *  blob). */
+    static Commit parse(byte[] contents) {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(contents));
+        try {
+            if (contents.length < Integer.BYTES + 1 || in.readInt() != MAGIC
+                || in.readByte() != VERSION) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                return null;
+            }
+            byte[] text = new byte[length];
+            in.readFully(text);
+            Date timestamp = new Date(in.readLong());
+            List<ObjectId> parents = new ArrayList<>();
+            for (int k = in.readUnsignedByte(); k > 0; k -= 1) {
+                parents.add(ObjectId.read(in));
+            }
+            ObjectId tree = ObjectId.read(in);
+            if (in.available() != 0) {
+                return null;
+            }
+            return new Commit(new String(text, StandardCharsets.UTF_8),
+                              timestamp, parents, tree);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    @Override
+    public void dump() {
+        System.out.printf("message: %s%ntimestamp: %s%nparents: %s%n"
+                          + "tree: %s%n", message, timestamp, parents, tree);
+    }
 
     /** The message of this Commit. */
     private String message;
-
-    /* TODO: fill in the rest of this class. */
+    /** The time at which this Commit was made. */
+    private Date timestamp;
+    /** UIDs of the parents of this Commit, first parent first. */
+    private ArrayList<ObjectId> parents;
+    /** UID of the root Tree of the tracked files. */
+    private ObjectId tree;
 }
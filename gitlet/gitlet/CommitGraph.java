@@ -0,0 +1,601 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static gitlet.Utils.*;
+
+/** The commit graph: a file recording, for every commit in a repository,
+ *  just what is needed to walk history, so that walks need not load and
+ *  decode Commit objects.
+ *
+ *  After a header (MAGIC, VERSION and the number of rows in the lookup
+ *  table) and the lookup table, the file holds one fixed-width record
+ *  per commit:
+ *      the commit's 20-byte binary UID,
+ *      the row numbers of its first and second parents (int, or NONE),
+ *      its generation number (int): 1 for a commit with no parents, and
+ *          otherwise one more than the largest generation of its
+ *          parents, and
+ *      its timestamp (long, milliseconds since the epoch).
+ *  Records are in the order the commits were made, so a commit's parents
+ *  always precede it and new commits are simply appended.
+ *
+ *  The lookup table finds the row of a UID, as PackFile's index finds an
+ *  object, and the UIDs that an abbreviated UID may stand for: a fan-out
+ *  table of 256 ints whose entry B is the number of table rows whose
+ *  UID's first byte is at most B, then each UID with its row (int), in
+ *  ascending order of UID.  It covers all rows but a short
+ *  tail of those appended since it was written, which are scanned.  Once
+ *  the tail grows to MAX_TAIL rows, the next commit rewrites the file
+ *  with the tail merged into the table, so each commit costs an append
+ *  and, now and then, one rewrite, while a lookup costs a binary search
+ *  among the UIDs sharing its first byte and a scan of at most MAX_TAIL
+ *  UIDs.
+ *
+ *  A generation number never exceeds that of any descendant, so a walk
+ *  looking for commit A from commit B can ignore everything whose
+ *  generation is below A's.
+ */
+class CommitGraph {
+
+    /** Magic number at the start of the file ("GCGR"). */
+    static final int MAGIC = 0x47434752;
+    /** Version of the file format. */
+    static final int VERSION = 2;
+    /** Parent row number denoting no parent. */
+    static final int NONE = -1;
+    /** Length of a binary UID in bytes. */
+    static final int ID_BYTES = ObjectId.BYTES;
+    /** Size of the header in bytes. */
+    static final int HEADER = 3 * Integer.BYTES;
+    /** Number of entries in the fan-out table. */
+    static final int FANOUT_SIZE = 256;
+    /** Size of an entry of the lookup table in bytes. */
+    static final int ENTRY = ID_BYTES + Integer.BYTES;
+    /** Largest number of rows kept after those in the lookup table. */
+    static final int MAX_TAIL = 256;
+    /** Size of a record in bytes. */
+    static final int RECORD = ID_BYTES + 3 * Integer.BYTES + Long.BYTES;
+    /** Offset within a record of the first parent's row. */
+    private static final int PARENT1 = ID_BYTES;
+    /** Offset within a record of the second parent's row. */
+    private static final int PARENT2 = PARENT1 + Integer.BYTES;
+    /** Offset within a record of the generation number. */
+    private static final int GENERATION = PARENT2 + Integer.BYTES;
+    /** Offset within a record of the timestamp. */
+    private static final int TIMESTAMP = GENERATION + Integer.BYTES;
+    /** Paint marking commits reachable from the first commit given to
+     *  splitPoint. */
+    private static final byte FROM_A = 1;
+    /** Paint marking commits reachable from the second commit given to
+     *  splitPoint. */
+    private static final byte FROM_B = 2;
+    /** Paint marking commits reachable from both. */
+    private static final byte BOTH = FROM_A | FROM_B;
+
+    /** The commit graph held in FILE, mapped into memory.  Throws
+     *  IllegalArgumentException if FILE is missing or malformed. */
+    CommitGraph(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        if (_data.limit() < fanoutPos(FANOUT_SIZE)
+            || _data.getInt(0) != MAGIC
+            || _data.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("bad commit graph " + file);
+        }
+        _indexed = _data.getInt(2 * Integer.BYTES);
+        _records = entryPos(_indexed);
+        if (_indexed < 0 || _records > _data.limit()
+            || (_data.limit() - _records) % RECORD != 0
+            || _data.getInt(fanoutPos(FANOUT_SIZE - 1)) != _indexed) {
+            throw new IllegalArgumentException("bad commit graph " + file);
+        }
+        _size = (_data.limit() - _records) / RECORD;
+        if (_indexed > _size) {
+            throw new IllegalArgumentException("bad commit graph " + file);
+        }
+    }
+
+    /** Returns the commit graph of the commits in STORE kept in FILE,
+     *  rebuilding FILE from STORE first if it is missing or
+     *  unreadable. */
+    static CommitGraph open(File file, ObjectStore store) {
+        if (file.isFile()) {
+            try {
+                return new CommitGraph(file);
+            } catch (IllegalArgumentException excp) {
+                file.delete();
+            }
+        }
+        rebuild(file, store);
+        return new CommitGraph(file);
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the row of the commit with UID ID, or NONE if it is not in
+     *  the graph. */
+    int rowOf(ObjectId id) {
+        int k = lowerBound(id);
+        if (k < _indexed && id.isAt(_data, entryPos(k))) {
+            return _data.getInt(entryPos(k) + ID_BYTES);
+        }
+        for (int row = _size - 1; row >= _indexed; row -= 1) {
+            if (id.isAt(_data, pos(row))) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    /** Returns the UIDs of the commits in the graph that begin with
+     *  PREFIX, a string of lower-case hexadecimal digits, in no
+     *  particular order.  At most LIMIT are returned; a LIMIT of 2
+     *  suffices to tell a unique prefix from an ambiguous one.  This is
+     *  how abbreviated UIDs are resolved: by a binary search of the
+     *  lookup table and a scan of the tail, not a comparison with every
+     *  commit. */
+    List<ObjectId> withPrefix(String prefix, int limit) {
+        List<ObjectId> result = new ArrayList<>();
+        if (prefix.isEmpty() || prefix.length() > UID_LENGTH
+            || !prefix.matches("[0-9a-f]*")) {
+            return result;
+        }
+        ObjectId low = ObjectId.fromHex((prefix + "0".repeat(UID_LENGTH))
+                                        .substring(0, UID_LENGTH));
+        for (int k = lowerBound(low); k < _indexed && result.size() < limit;
+             k += 1) {
+            ObjectId id = ObjectId.get(_data, entryPos(k));
+            if (!id.toHex().startsWith(prefix)) {
+                break;
+            }
+            result.add(id);
+        }
+        for (int row = _indexed; row < _size && result.size() < limit;
+             row += 1) {
+            ObjectId id = idAt(row);
+            if (id.toHex().startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the index of the first entry of the lookup table whose UID
+     *  is not less than KEY, searching only among the UIDs that share
+     *  KEY's first byte. */
+    private int lowerBound(ObjectId key) {
+        int lo = 0;
+        if (key.firstByte() > 0) {
+            lo = _data.getInt(fanoutPos(key.firstByte() - 1));
+        }
+        int hi = _data.getInt(fanoutPos(key.firstByte()));
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key.compareTo(_data, entryPos(mid)) > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the UID of the commit in ROW. */
+    ObjectId idAt(int row) {
+        return ObjectId.get(_data, pos(row));
+    }
+
+    /** Returns the row of the first parent of the commit in ROW, or
+     *  NONE. */
+    int parent1(int row) {
+        return _data.getInt(pos(row) + PARENT1);
+    }
+
+    /** Returns the row of the second parent of the commit in ROW, or
+     *  NONE. */
+    int parent2(int row) {
+        return _data.getInt(pos(row) + PARENT2);
+    }
+
+    /** Returns the generation number of the commit in ROW. */
+    int generation(int row) {
+        return _data.getInt(pos(row) + GENERATION);
+    }
+
+    /** Returns the timestamp of the commit in ROW. */
+    long timestamp(int row) {
+        return _data.getLong(pos(row) + TIMESTAMP);
+    }
+
+    /** Returns true iff the commit in row ANCESTOR is the commit in row
+     *  DESCENDANT or one of its ancestors.  Commits whose generation is
+     *  below ANCESTOR's cannot lead to it and are not explored. */
+    boolean isAncestor(int ancestor, int descendant) {
+        if (ancestor == NONE || descendant == NONE) {
+            return false;
+        }
+        int floor = generation(ancestor);
+        BitSet seen = new BitSet(_size);
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(descendant);
+        while (!work.isEmpty()) {
+            int row = work.pop();
+            if (row == ancestor) {
+                return true;
+            }
+            if (row == NONE || seen.get(row) || generation(row) <= floor) {
+                continue;
+            }
+            seen.set(row);
+            work.push(parent1(row));
+            work.push(parent2(row));
+        }
+        return false;
+    }
+
+    /** Returns the rows of the commits reached from ROW by following
+     *  first parents, starting with ROW itself. */
+    List<Integer> firstParentChain(int row) {
+        List<Integer> result = new ArrayList<>();
+        for (int r = row; r != NONE; r = parent1(r)) {
+            result.add(r);
+        }
+        return result;
+    }
+
+    /** Returns the row of the latest common ancestor of the commits in
+     *  rows A and B, or NONE if they have none, recording the search in
+     *  TRACE.
+     *
+     *  Commits are painted with the color of each of A and B from which
+     *  they can be reached, visiting them in order of decreasing
+     *  generation number (then decreasing timestamp), and following
+     *  second parents as well as first.  Every descendant of a commit has
+     *  a larger generation, so by the time a commit is visited it has
+     *  received all the paint it ever will.  The first commit visited
+     *  that carries both colors is therefore a common ancestor that no
+     *  other one can beat, and the search stops there, having looked only
+     *  at commits newer than the answer.  It also stops, with no answer,
+     *  as soon as no commit waiting to be visited carries one of the
+     *  colors, since no common ancestor can then remain. */
+    int splitPoint(int a, int b, Trace trace) {
+        if (a == NONE || b == NONE) {
+            return NONE;
+        }
+        Trace.Span span = trace.span(Trace.MERGE_BASE);
+        byte[] paint = new byte[_size];
+        int[] waiting = new int[BOTH + 1];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(this::newerFirst);
+        paint(a, FROM_A, paint, waiting, queue);
+        paint(b, FROM_B, paint, waiting, queue);
+        int result = NONE;
+        int visited = 0;
+        while (waiting[FROM_A] + waiting[BOTH] > 0
+               && waiting[FROM_B] + waiting[BOTH] > 0) {
+            int row = queue.remove();
+            visited += 1;
+            byte colors = paint[row];
+            if (colors == BOTH) {
+                result = row;
+                break;
+            }
+            waiting[colors] -= 1;
+            paint(parent1(row), colors, paint, waiting, queue);
+            paint(parent2(row), colors, paint, waiting, queue);
+        }
+        span.end(0, visited);
+        return result;
+    }
+
+    /** Add COLORS to the paint of ROW (if not NONE) recorded in PAINT,
+     *  adding ROW to QUEUE if it had no paint before, and keep the
+     *  numbers of rows in QUEUE carrying each color in WAITING. */
+    private void paint(int row, byte colors, byte[] paint, int[] waiting,
+                       PriorityQueue<Integer> queue) {
+        if (row == NONE || (paint[row] | colors) == paint[row]) {
+            return;
+        }
+        if (paint[row] == 0) {
+            queue.add(row);
+        } else {
+            waiting[paint[row]] -= 1;
+        }
+        paint[row] |= colors;
+        waiting[paint[row]] += 1;
+    }
+
+    /** Compares rows R0 and R1 so that the one with the larger generation
+     *  number, or failing that the later timestamp, comes first. */
+    private int newerFirst(int r0, int r1) {
+        int c = Integer.compare(generation(r1), generation(r0));
+        if (c != 0) {
+            return c;
+        }
+        return Long.compare(timestamp(r1), timestamp(r0));
+    }
+
+    /** Returns the position in the file of the record for ROW. */
+    private int pos(int row) {
+        return _records + row * RECORD;
+    }
+
+    /** Returns the position in the file of fan-out entry B. */
+    private static int fanoutPos(int b) {
+        return HEADER + b * Integer.BYTES;
+    }
+
+    /** Returns the position in the file of the Kth entry of the lookup
+     *  table. */
+    private static int entryPos(int k) {
+        return fanoutPos(FANOUT_SIZE) + k * ENTRY;
+    }
+
+    /** Add the commit COMMIT with UID ID, just written to STORE, to the
+     *  graph in FILE, rebuilding FILE from STORE if it is missing, stale
+     *  or malformed.  Does nothing if the commit is already present. */
+    static void append(File file, ObjectStore store, ObjectId id,
+                       Commit commit) {
+        CommitGraph graph = null;
+        if (file.isFile()) {
+            try {
+                graph = new CommitGraph(file);
+            } catch (IllegalArgumentException excp) {
+                graph = null;
+            }
+        }
+        if (graph == null) {
+            rebuild(file, store);
+            return;
+        }
+        if (graph.rowOf(id) != NONE) {
+            return;
+        }
+        int[] parents = { NONE, NONE };
+        int generation = 1;
+        List<ObjectId> parentIds = commit.getParents();
+        for (int k = 0; k < parentIds.size() && k < parents.length; k += 1) {
+            parents[k] = graph.rowOf(parentIds.get(k));
+            if (parents[k] == NONE) {
+                rebuild(file, store);
+                return;
+            }
+            generation = Math.max(generation,
+                                  graph.generation(parents[k]) + 1);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        id.put(record);
+        record.putInt(parents[0]).putInt(parents[1]).putInt(generation)
+            .putLong(commit.getTimestamp().getTime());
+        record.flip();
+        if (graph._size - graph._indexed >= MAX_TAIL) {
+            graph.rewrite(file, record, store.metrics());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(
+                 file.toPath(), StandardOpenOption.APPEND)) {
+            channel.write(record);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Durably replace FILE, which holds this graph, with this graph plus
+     *  RECORD as its last row, with every row in the lookup table,
+     *  counting the work in METRICS.  The tail is sorted and merged with
+     *  the table, so this takes time linear in the size of the graph. */
+    private void rewrite(File file, ByteBuffer record, Metrics metrics) {
+        List<ObjectId> tailIds = new ArrayList<>();
+        for (int row = _indexed; row < _size; row += 1) {
+            tailIds.add(idAt(row));
+        }
+        tailIds.add(ObjectId.get(record, 0));
+        List<Integer> tailRows = new ArrayList<>();
+        for (int k = 0; k < tailIds.size(); k += 1) {
+            tailRows.add(_indexed + k);
+        }
+        tailRows.sort(Comparator.comparing(
+            row -> tailIds.get(row - _indexed)));
+        List<ObjectId> ids = new ArrayList<>(_size + 1);
+        List<Integer> rows = new ArrayList<>(_size + 1);
+        int k = 0;
+        for (int row : tailRows) {
+            ObjectId id = tailIds.get(row - _indexed);
+            for (; k < _indexed && id.compareTo(_data, entryPos(k)) > 0;
+                 k += 1) {
+                ids.add(ObjectId.get(_data, entryPos(k)));
+                rows.add(_data.getInt(entryPos(k) + ID_BYTES));
+            }
+            ids.add(id);
+            rows.add(row);
+        }
+        for (; k < _indexed; k += 1) {
+            ids.add(ObjectId.get(_data, entryPos(k)));
+            rows.add(_data.getInt(entryPos(k) + ID_BYTES));
+        }
+        try {
+            File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                            file.getParentFile());
+            try (FileChannel channel = FileChannel.open(
+                     temp.toPath(), StandardOpenOption.WRITE)) {
+                ByteArrayOutputStream table = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(table)) {
+                    writeTable(out, ids, rows);
+                }
+                channel.write(ByteBuffer.wrap(table.toByteArray()));
+                channel.write(_data.slice(_records, _size * RECORD));
+                channel.write(record);
+            }
+            WriteBatch batch = new WriteBatch(metrics);
+            batch.add(temp, file);
+            batch.commit();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Write on OUT the header and lookup table of a graph whose rows
+     *  are all in the table: the UIDs IDS, in ascending order, and their
+     *  rows ROWS. */
+    private static void writeTable(DataOutputStream out, List<ObjectId> ids,
+                                   List<Integer> rows) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(ids.size());
+        int[] fanout = new int[FANOUT_SIZE];
+        for (ObjectId id : ids) {
+            fanout[id.firstByte()] += 1;
+        }
+        int total = 0;
+        for (int b = 0; b < FANOUT_SIZE; b += 1) {
+            total += fanout[b];
+            out.writeInt(total);
+        }
+        for (int k = 0; k < ids.size(); k += 1) {
+            ids.get(k).write(out);
+            out.writeInt(rows.get(k));
+        }
+    }
+
+    /** Write to FILE the graph of all commits in STORE. */
+    static void rebuild(File file, ObjectStore store) {
+        Map<ObjectId, Commit> commits = new HashMap<>();
+        for (ObjectId id : store.ids()) {
+            Commit commit = Commit.loadIfCommit(store, id);
+            if (commit != null) {
+                commits.put(id, commit);
+            }
+        }
+        write(file, commits, store.metrics());
+    }
+
+    /** Durably replace FILE with the graph of COMMITS (UID -> commit),
+     *  counting the work in METRICS.  Each commit gets a row after those
+     *  of its parents, and otherwise in the iteration order of COMMITS,
+     *  so a LinkedHashMap in the order the commits were made yields rows
+     *  in that order. */
+    static void write(File file, Map<ObjectId, Commit> commits,
+                      Metrics metrics) {
+        Map<ObjectId, Integer> rows = new HashMap<>();
+        List<ObjectId> order = new ArrayList<>();
+        for (ObjectId id : commits.keySet()) {
+            addInOrder(id, commits, rows, order);
+        }
+        try {
+            File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                            file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(
+                         temp.toPath()), BUFFER_SIZE))) {
+                List<Integer> sorted = new ArrayList<>(order.size());
+                for (int row = 0; row < order.size(); row += 1) {
+                    sorted.add(row);
+                }
+                sorted.sort(Comparator.comparing(order::get));
+                List<ObjectId> ids = new ArrayList<>(order.size());
+                for (int row : sorted) {
+                    ids.add(order.get(row));
+                }
+                writeTable(out, ids, sorted);
+                int[] generations = new int[order.size()];
+                for (int row = 0; row < order.size(); row += 1) {
+                    generations[row] = writeRecord(out, order.get(row),
+                                                   commits, rows,
+                                                   generations);
+                }
+            }
+            WriteBatch batch = new WriteBatch(metrics);
+            batch.add(temp, file);
+            batch.commit();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Write on OUT the record of the commit with UID ID from COMMITS,
+     *  whose parents' rows are in ROWS and their generation numbers in
+     *  GENERATIONS, and return its generation number. */
+    private static int writeRecord(DataOutputStream out, ObjectId id,
+                                   Map<ObjectId, Commit> commits,
+                                   Map<ObjectId, Integer> rows,
+                                   int[] generations) throws IOException {
+        id.write(out);
+        int generation = 1;
+        List<ObjectId> parents = commits.get(id).getParents();
+        for (int k = 0; k < 2; k += 1) {
+            int row = NONE;
+            if (k < parents.size() && rows.containsKey(parents.get(k))) {
+                row = rows.get(parents.get(k));
+                generation = Math.max(generation, generations[row] + 1);
+            }
+            out.writeInt(row);
+        }
+        out.writeInt(generation);
+        out.writeLong(commits.get(id).getTimestamp().getTime());
+        return generation;
+    }
+
+    /** Append to ORDER, recording their rows in ROWS, the commit with UID
+     *  ID from COMMITS and any of its ancestors not yet in ORDER, each
+     *  after its parents. */
+    private static void addInOrder(ObjectId id,
+                                   Map<ObjectId, Commit> commits,
+                                   Map<ObjectId, Integer> rows,
+                                   List<ObjectId> order) {
+        ArrayDeque<ObjectId> work = new ArrayDeque<>();
+        work.push(id);
+        while (!work.isEmpty()) {
+            ObjectId top = work.peek();
+            if (rows.containsKey(top)) {
+                work.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (ObjectId parent : commits.get(top).getParents()) {
+                if (commits.containsKey(parent)
+                    && !rows.containsKey(parent)) {
+                    work.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                work.pop();
+                rows.put(top, order.size());
+                order.add(top);
+            }
+        }
+    }
+
+    /** The file, mapped into memory. */
+    private final MappedByteBuffer _data;
+    /** Number of records in the file. */
+    private final int _size;
+    /** Number of rows in the lookup table. */
+    private final int _indexed;
+    /** Position in the file of the first record. */
+    private final int _records;
+}
@@ -0,0 +1,280 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of CommitGraph: its lookup of full and abbreviated UIDs, how
+ *  it merges its tail of appended rows into its lookup table, and its
+ *  merge-base search. */
+public class CommitGraphTest {
+
+    /** Directory holding the graph of each test. */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Start an empty history. */
+    @Before
+    public void setUp() throws IOException {
+        _file = new File(tmp.getRoot(), "commit-graph");
+        _commits = new LinkedHashMap<>();
+        _ids = new ArrayList<>();
+        _store = new ObjectStore(tmp.newFolder("objects"));
+    }
+
+    /** Add a commit whose parents are the commits made by the calls
+     *  numbered PARENTS, and return its number. */
+    private int commit(int... parents) {
+        List<ObjectId> parentIds = new ArrayList<>();
+        for (int parent : parents) {
+            parentIds.add(_ids.get(parent));
+        }
+        int n = _ids.size();
+        ObjectId id = ObjectId.fromHex(Utils.sha1("commit", "" + n));
+        _commits.put(id, new Commit("commit " + n, new Date(1000L * n),
+                                    parentIds, id));
+        _ids.add(id);
+        return n;
+    }
+
+    /** Returns the graph of the commits made so far. */
+    private CommitGraph graph() {
+        CommitGraph.write(_file, _commits, new Metrics());
+        return new CommitGraph(_file);
+    }
+
+    /** Returns the number of the commit that GRAPH finds as the split
+     *  point of commits A and B, or -1 if it finds none. */
+    private int splitPoint(CommitGraph graph, int a, int b) {
+        int row = graph.splitPoint(graph.rowOf(_ids.get(a)),
+                                   graph.rowOf(_ids.get(b)), new Trace());
+        if (row == CommitGraph.NONE) {
+            return -1;
+        }
+        return _ids.indexOf(graph.idAt(row));
+    }
+
+    /** Add to the graph in _file a commit whose parents are the commits
+     *  made by the calls numbered PARENTS, and return its number. */
+    private int append(int... parents) {
+        int n = commit(parents);
+        CommitGraph.append(_file, _store, _ids.get(n),
+                           _commits.get(_ids.get(n)));
+        return n;
+    }
+
+    /** Returns the number of rows in the lookup table of _file. */
+    private int indexedCount() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(_file.toPath()))
+            .getInt(2 * Integer.BYTES);
+    }
+
+    /** Assert that GRAPH holds exactly the commits made, with their
+     *  parents, and finds the same UIDs by prefix as a scan of them
+     *  does. */
+    private void assertHolds(CommitGraph graph) {
+        assertEquals(_ids.size(), graph.size());
+        for (ObjectId id : _ids) {
+            int row = graph.rowOf(id);
+            assertEquals(id, graph.idAt(row));
+            List<ObjectId> parents = _commits.get(id).getParents();
+            int parent = CommitGraph.NONE;
+            if (!parents.isEmpty()) {
+                parent = graph.rowOf(parents.get(0));
+            }
+            assertEquals(parent, graph.parent1(row));
+            assertEquals(List.of(id),
+                         graph.withPrefix(id.toHex().substring(0, 8), 2));
+        }
+        assertEquals(CommitGraph.NONE,
+                     graph.rowOf(ObjectId.fromHex(Utils.sha1("absent"))));
+        for (String prefix : List.of("0", "7f", "a3", "ff", "e0c")) {
+            Set<ObjectId> expected = new HashSet<>();
+            for (ObjectId id : _ids) {
+                if (id.toHex().startsWith(prefix)) {
+                    expected.add(id);
+                }
+            }
+            assertEquals(prefix, expected,
+                         new HashSet<>(graph.withPrefix(prefix,
+                                                        _ids.size() + 1)));
+            assertEquals(Math.min(2, expected.size()),
+                         graph.withPrefix(prefix, 2).size());
+        }
+        assertTrue(graph.withPrefix("", 2).isEmpty());
+        assertTrue(graph.withPrefix("xyz", 2).isEmpty());
+    }
+
+    @Test
+    public void appendsToTailThenMerges() throws IOException {
+        int tail = CommitGraph.MAX_TAIL;
+        CommitGraph.write(_file, Map.of(), new Metrics());
+        append();
+        for (int k = 1; k < tail; k += 1) {
+            append(k - 1);
+        }
+        assertEquals(0, indexedCount());
+        assertHolds(new CommitGraph(_file));
+        append(tail - 1, tail / 2);
+        assertEquals(tail + 1, indexedCount());
+        assertHolds(new CommitGraph(_file));
+        for (int k = tail + 1; k < 2 * tail + 1; k += 1) {
+            append(k - 1);
+        }
+        assertEquals(tail + 1, indexedCount());
+        assertHolds(new CommitGraph(_file));
+        append(2 * tail);
+        assertEquals(2 * tail + 2, indexedCount());
+        assertHolds(new CommitGraph(_file));
+    }
+
+    @Test
+    public void ignoresDuplicates() {
+        CommitGraph.write(_file, Map.of(), new Metrics());
+        for (int k = 0; k < 10; k += 1) {
+            append();
+        }
+        long length = _file.length();
+        CommitGraph.append(_file, _store, _ids.get(3),
+                           _commits.get(_ids.get(3)));
+        assertEquals(length, _file.length());
+        assertHolds(new CommitGraph(_file));
+    }
+
+    @Test
+    public void linearHistory() {
+        int root = commit();
+        int a = commit(root);
+        int b = commit(a);
+        CommitGraph graph = graph();
+        assertEquals(a, splitPoint(graph, b, a));
+        assertEquals(a, splitPoint(graph, a, b));
+        assertEquals(b, splitPoint(graph, b, b));
+        assertEquals(root, splitPoint(graph, root, b));
+    }
+
+    @Test
+    public void branches() {
+        int root = commit();
+        int m1 = commit(root);
+        int s1 = commit(root);
+        int m2 = commit(m1);
+        int s2 = commit(s1);
+        CommitGraph graph = graph();
+        assertEquals(root, splitPoint(graph, m2, s2));
+        assertEquals(root, splitPoint(graph, s1, m1));
+    }
+
+    @Test
+    public void afterMerge() {
+        int root = commit();
+        int m1 = commit(root);
+        int s1 = commit(root);
+        int merge = commit(m1, s1);
+        int s2 = commit(s1);
+        int m2 = commit(merge);
+        CommitGraph graph = graph();
+        assertEquals(s1, splitPoint(graph, m2, s2));
+        assertEquals(s1, splitPoint(graph, s2, m2));
+        assertEquals(merge, splitPoint(graph, m2, merge));
+    }
+
+    @Test
+    public void crissCrossMerge() {
+        int root = commit();
+        int a1 = commit(root);
+        int b1 = commit(root);
+        int a2 = commit(a1, b1);
+        int b2 = commit(b1, a1);
+        int a3 = commit(a2);
+        int b3 = commit(b2);
+        CommitGraph graph = graph();
+        for (int[] pair : new int[][] { { a2, b2 }, { b3, a3 } }) {
+            int split = splitPoint(graph, pair[0], pair[1]);
+            assertTrue("split point " + split + " is not a latest common "
+                       + "ancestor", split == a1 || split == b1);
+        }
+    }
+
+    @Test
+    public void unrelatedHistories() {
+        int a = commit();
+        int b = commit();
+        int a1 = commit(a);
+        CommitGraph graph = graph();
+        assertEquals(-1, splitPoint(graph, a1, b));
+        assertEquals(CommitGraph.NONE,
+                     graph.splitPoint(CommitGraph.NONE, graph.rowOf(
+                                          _ids.get(a)), new Trace()));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(61);
+        int n = 400;
+        List<BitSet> ancestors = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            BitSet mine = new BitSet();
+            if (k == 0 || random.nextInt(50) == 0) {
+                commit();
+            } else if (k < 2 || random.nextInt(4) != 0) {
+                int p = k - 1 - random.nextInt(Math.min(k, 8));
+                commit(p);
+                mine.or(ancestors.get(p));
+            } else {
+                int p1 = k - 1 - random.nextInt(Math.min(k, 8));
+                int p2 = random.nextInt(k);
+                commit(p1, p2);
+                mine.or(ancestors.get(p1));
+                mine.or(ancestors.get(p2));
+            }
+            mine.set(k);
+            ancestors.add(mine);
+        }
+        CommitGraph graph = graph();
+        for (int t = 0; t < 2000; t += 1) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            BitSet common = (BitSet) ancestors.get(a).clone();
+            common.and(ancestors.get(b));
+            int split = splitPoint(graph, a, b);
+            if (common.isEmpty()) {
+                assertEquals(-1, split);
+                continue;
+            }
+            assertTrue(split >= 0 && common.get(split));
+            for (int c = common.nextSetBit(0); c >= 0;
+                 c = common.nextSetBit(c + 1)) {
+                assertFalse("common ancestor " + c + " of " + a + " and "
+                            + b + " is later than " + split,
+                            c != split && ancestors.get(c).get(split));
+            }
+        }
+    }
+
+    /** The file holding the graph. */
+    private File _file;
+    /** The commits made, by UID, in the order made. */
+    private LinkedHashMap<ObjectId, Commit> _commits;
+    /** The UIDs of the commits made, in the order made. */
+    private List<ObjectId> _ids;
+    /** The store from which a damaged graph would be rebuilt. */
+    private ObjectStore _store;
+}
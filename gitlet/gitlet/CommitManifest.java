@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** The commit manifest: an append-only file listing every commit in a
+ *  repository, in the order the commits were made, with just what
+ *  global-log and find print.  Walking it costs one sequential read,
+ *  rather than a directory listing and a load of every object.
+ *
+ *  After a header (MAGIC, VERSION, a random stamp chosen whenever the
+ *  file is rebuilt, the number of records and the offset of the end of
+ *  the last record) each record holds
+ *      the commit's 20-byte binary UID,
+ *      its timestamp (long, milliseconds since the epoch),
+ *      its parent count (byte) and each parent as a 20-byte binary UID,
+ *      its message (int byte count, then UTF-8 bytes).
+ *  A record is found by its offset in the file, which is what the
+ *  MessageIndex keeps, along with the stamp of the manifest whose offsets
+ *  they are.  The manifest lists the same commits as the
+ *  CommitGraph, in the same order, so it is current exactly when it has
+ *  as many records as the graph has rows.
+ */
+class CommitManifest {
+
+    /** Magic number at the start of the file ("GMAN"). */
+    static final int MAGIC = 0x474d414e;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Length of a binary UID in bytes. */
+    static final int ID_BYTES = ObjectId.BYTES;
+    /** Size of the header in bytes. */
+    static final int HEADER = 4 * Integer.BYTES + Long.BYTES;
+    /** Position in the header of the stamp. */
+    private static final int STAMP = 2 * Integer.BYTES;
+    /** Position in the header of the number of records, which is
+     *  followed by the end offset. */
+    private static final int COUNT = STAMP + Long.BYTES;
+
+    /** The manifest held in FILE, mapped into memory.  Throws
+     *  IllegalArgumentException if FILE is missing or malformed. */
+    CommitManifest(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        if (_data.limit() < HEADER || _data.getInt(0) != MAGIC
+            || _data.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("bad manifest " + file);
+        }
+        _stamp = _data.getLong(STAMP);
+        _size = _data.getInt(COUNT);
+        _end = _data.getInt(COUNT + Integer.BYTES);
+        if (_size < 0 || _end < HEADER || _end > _data.limit()) {
+            throw new IllegalArgumentException("bad manifest " + file);
+        }
+    }
+
+    /** Returns the manifest kept in FILE of the commits in GRAPH, whose
+     *  objects are in STORE, rebuilding FILE first if it is missing,
+     *  unreadable or out of date. */
+    static CommitManifest open(File file, CommitGraph graph,
+                               ObjectStore store) {
+        if (file.isFile()) {
+            try {
+                CommitManifest result = new CommitManifest(file);
+                if (result.size() == graph.size()) {
+                    return result;
+                }
+            } catch (IllegalArgumentException excp) {
+                file.delete();
+            }
+        }
+        rebuild(file, graph, store);
+        return new CommitManifest(file);
+    }
+
+    /** Returns the stamp of this manifest, which changes whenever it is
+     *  rebuilt and so the offsets of its records may change. */
+    long stamp() {
+        return _stamp;
+    }
+
+    /** Returns the number of records. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the offset of the first record. */
+    int first() {
+        return HEADER;
+    }
+
+    /** Returns the offset of the record following the one at OFFSET, or
+     *  the end offset if it is the last. */
+    int next(int offset) {
+        int parents = _data.get(offset + ID_BYTES + Long.BYTES);
+        int pos = offset + ID_BYTES + Long.BYTES + 1 + parents * ID_BYTES;
+        return pos + Integer.BYTES + _data.getInt(pos);
+    }
+
+    /** Returns true iff OFFSET is past the last record. */
+    boolean atEnd(int offset) {
+        return offset >= _end;
+    }
+
+    /** Returns the UID of the commit in the record at OFFSET. */
+    String id(int offset) {
+        return idAt(offset);
+    }
+
+    /** Returns the timestamp of the commit in the record at OFFSET. */
+    Date timestamp(int offset) {
+        return new Date(_data.getLong(offset + ID_BYTES));
+    }
+
+    /** Returns the UIDs of the parents of the commit in the record at
+     *  OFFSET, first parent first. */
+    List<String> parents(int offset) {
+        int pos = offset + ID_BYTES + Long.BYTES;
+        int n = _data.get(pos);
+        List<String> result = new ArrayList<>(n);
+        for (int k = 0; k < n; k += 1) {
+            result.add(idAt(pos + 1 + k * ID_BYTES));
+        }
+        return result;
+    }
+
+    /** Returns the message of the commit in the record at OFFSET. */
+    String message(int offset) {
+        int parents = _data.get(offset + ID_BYTES + Long.BYTES);
+        int pos = offset + ID_BYTES + Long.BYTES + 1 + parents * ID_BYTES;
+        byte[] bytes = new byte[_data.getInt(pos)];
+        _data.get(pos + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the UID stored at position POS. */
+    private String idAt(int pos) {
+        return ObjectId.get(_data, pos).toHex();
+    }
+
+    /** Add the commit COMMIT with UID ID, just added to GRAPH, to the
+     *  manifest in FILE, rebuilding FILE from GRAPH and STORE instead if
+     *  it is missing or does not hold exactly the commits before ID.
+     *  Does nothing if ID is already present.  Returns the offset of the
+     *  new record, or -1 if the manifest was not appended to. */
+    static int append(File file, CommitGraph graph, ObjectStore store,
+                      ObjectId id, Commit commit) {
+        CommitManifest manifest;
+        try {
+            manifest = new CommitManifest(file);
+        } catch (IllegalArgumentException excp) {
+            rebuild(file, graph, store);
+            return -1;
+        }
+        if (manifest.size() == graph.size()) {
+            return -1;
+        }
+        if (manifest.size() != graph.size() - 1
+            || !graph.idAt(graph.size() - 1).equals(id)) {
+            rebuild(file, graph, store);
+            return -1;
+        }
+        int offset = manifest._end;
+        byte[] record = record(id, commit);
+        try (FileChannel channel = FileChannel.open(
+                 file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(record), offset);
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            header.putInt(manifest.size() + 1).putInt(offset + record.length)
+                .flip();
+            channel.write(header, COUNT);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return offset;
+    }
+
+    /** Durably write to FILE a manifest of all commits in GRAPH, whose
+     *  objects are in STORE. */
+    static void rebuild(File file, CommitGraph graph, ObjectStore store) {
+        Metrics metrics = store.metrics();
+        try {
+            File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                            file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(
+                         temp.toPath()), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(new Random().nextLong());
+                List<byte[]> records = new ArrayList<>(graph.size());
+                int end = HEADER;
+                for (int row = 0; row < graph.size(); row += 1) {
+                    ObjectId id = graph.idAt(row);
+                    records.add(record(id, Commit.load(store, id)));
+                    end += records.get(row).length;
+                }
+                out.writeInt(graph.size());
+                out.writeInt(end);
+                for (byte[] record : records) {
+                    out.write(record);
+                }
+            }
+            WriteBatch batch = new WriteBatch(metrics);
+            batch.add(temp, file);
+            batch.commit();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Returns the record for commit COMMIT with UID ID. */
+    private static byte[] record(ObjectId id, Commit commit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            id.write(out);
+            out.writeLong(commit.getTimestamp().getTime());
+            out.writeByte(commit.getParents().size());
+            for (ObjectId parent : commit.getParents()) {
+                parent.write(out);
+            }
+            byte[] message =
+                commit.getMessage().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(message.length);
+            out.write(message);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** The file, mapped into memory. */
+    private final MappedByteBuffer _data;
+    /** The stamp of the file. */
+    private final long _stamp;
+    /** Number of records in the file. */
+    private final int _size;
+    /** Offset of the end of the last record.  Anything after it was left
+     *  by an append that did not finish, and is overwritten by the
+     *  next. */
+    private final int _end;
+}
@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Copy/insert deltas between two versions of an object's contents.
+ *  A delta describes a TARGET byte sequence in terms of a BASE: it
+ *  starts with the lengths of the base and the target as varints and
+ *  continues with a sequence of instructions, each either
+ *    - a byte 0 < N <= MAX_INSERT followed by N bytes to insert
+ *      literally, or
+ *    - the byte COPY followed by an offset and a length (varints),
+ *      meaning that the bytes at that offset of the base are copied.
+ *  Matches are found by indexing the base in blocks of BLOCK bytes and
+ *  scanning the target with a rolling hash, then extending each match
+ *  in both directions, so small edits to large files yield small
+ *  deltas.
+ */
+class Delta {
+
+    /** Length of the blocks of the base that are indexed. */
+    static final int BLOCK = 16;
+    /** Instruction byte introducing a copy from the base. */
+    static final int COPY = 0x80;
+    /** Largest number of literal bytes in one insert instruction. */
+    static final int MAX_INSERT = 0x7f;
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 0x01000193;
+    /** Mask of the low seven bits of a varint byte. */
+    private static final int LOW_BITS = 0x7f;
+    /** Flag marking a varint byte that is followed by more. */
+    private static final int MORE = 0x80;
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        HashMap<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            index.putIfAbsent(hash(base, i), i);
+        }
+        int pending = 0;
+        int t = 0;
+        int h = hash(target, 0);
+        int top = power();
+        while (t + BLOCK <= target.length) {
+            Integer cand = index.get(h);
+            int len = 0;
+            if (cand != null) {
+                len = matchLength(base, cand, target, t);
+            }
+            if (len < BLOCK) {
+                if (t + BLOCK < target.length) {
+                    h = (h - target[t] * top) * PRIME + target[t + BLOCK];
+                }
+                t += 1;
+                continue;
+            }
+            int b = cand;
+            while (t > pending && b > 0 && base[b - 1] == target[t - 1]) {
+                t -= 1;
+                b -= 1;
+                len += 1;
+            }
+            writeInsert(out, target, pending, t);
+            out.write(COPY);
+            writeVarint(out, b);
+            writeVarint(out, len);
+            t += len;
+            pending = t;
+            h = hash(target, t);
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE.  Throws
+     *  IllegalArgumentException if DELTA was not made against BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta does not match base");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int r = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]] & 0xff;
+            pos[0] += 1;
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, r, len);
+                r += len;
+            } else {
+                System.arraycopy(delta, pos[0], result, r, op);
+                pos[0] += op;
+                r += op;
+            }
+        }
+        if (r != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Returns the number of bytes, starting at B in BASE and at T in
+     *  TARGET, that are equal. */
+    private static int matchLength(byte[] base, int b, byte[] target,
+                                   int t) {
+        int len = 0;
+        while (b + len < base.length && t + len < target.length
+               && base[b + len] == target[t + len]) {
+            len += 1;
+        }
+        return len;
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA starting at START, or
+     *  0 if fewer than BLOCK bytes remain. */
+    private static int hash(byte[] data, int start) {
+        if (start + BLOCK > data.length) {
+            return 0;
+        }
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = h * PRIME + data[i];
+        }
+        return h;
+    }
+
+    /** Returns PRIME ** (BLOCK - 1), the weight of the byte leaving the
+     *  rolling hash. */
+    private static int power() {
+        int result = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            result *= PRIME;
+        }
+        return result;
+    }
+
+    /** Write insert instructions for bytes FROM .. TO-1 of DATA on
+     *  OUT. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] data,
+                                    int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(data, from, n);
+            from += n;
+        }
+    }
+
+    /** Write the non-negative VALUE on OUT as a varint: seven bits per
+     *  byte, least significant first, with the high bit set on all but
+     *  the last byte. */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~LOW_BITS) != 0) {
+            out.write((value & LOW_BITS) | MORE);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Returns the varint in DATA starting at POS[0], advancing POS[0]
+     *  past it. */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = data[pos[0]] & 0xff;
+            pos[0] += 1;
+            result |= (b & LOW_BITS) << shift;
+            if ((b & MORE) == 0) {
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/** The line-level differences between two texts, A and B, as a list of
+ *  Edits that turn A into B, and their formatting as a unified diff.
+ *
+ *  Lines are first interned to small integers, so the algorithms compare
+ *  ints rather than Strings.  Two algorithms are provided:
+ *
+ *  myers is Myers' O(ND) algorithm ("An O(ND) Difference Algorithm and
+ *  Its Variations", 1986), which finds a shortest edit script in time
+ *  O((N+M)D) for texts of N and M lines differing by D lines.  It uses
+ *  the linear-space refinement: each region is split at the middle snake
+ *  of its optimal path, found by searching forward from its start and
+ *  backward from its end at once, so only two arrays of N+M+2 ints are
+ *  ever needed.  Regions are kept on an explicit stack, not the Java
+ *  stack, so deep splits cannot overflow it.
+ *
+ *  histogram is the histogram variant of patience diff.  Each region is
+ *  split around the longest run of common lines that contains the
+ *  line occurring least often (at most MAX_CHAIN times) in A; regions
+ *  without such a line fall back to myers.  Anchoring on rare lines
+ *  keeps the result readable for texts full of repeated lines (blank
+ *  lines, lone braces) and keeps D, and so the time, small when large
+ *  blocks have moved.
+ *
+ *  Both first strip the lines common to the start and end of each
+ *  region, which is where most edits between similar texts leave most
+ *  of the lines.
+ */
+class Diff {
+
+    /** Default number of unchanged lines shown around each change in a
+     *  unified diff. */
+    static final int CONTEXT = 3;
+    /** Lines occurring more often than this in a region are not used as
+     *  anchors by histogram. */
+    static final int MAX_CHAIN = 64;
+
+    /** A diff between the lines A and B, as produced by lines. */
+    Diff(List<String> a, List<String> b) {
+        _lines = a;
+        _otherLines = b;
+        HashMap<String, Integer> ids = new HashMap<>();
+        _a = intern(a, ids);
+        _b = intern(b, ids);
+        _distinct = ids.size();
+    }
+
+    /** Returns the lines of CONTENTS, read as UTF-8, each with its
+     *  terminating newline, if any.  Only the last line can lack one. */
+    static List<String> lines(byte[] contents) {
+        String text = new String(contents, StandardCharsets.UTF_8);
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start) + 1;
+            if (end == 0) {
+                end = text.length();
+            }
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /** Returns true iff CONTENTS looks like binary data rather than text:
+     *  that is, if it has a NUL byte among its first BINARY_PROBE
+     *  bytes. */
+    static boolean isBinary(byte[] contents) {
+        for (int k = 0; k < Math.min(contents.length, BINARY_PROBE); k += 1) {
+            if (contents[k] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Number of bytes examined by isBinary. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** Returns the IDs of LINES, numbering new lines in IDS from
+     *  IDS.size(). */
+    private static int[] intern(List<String> lines,
+                                HashMap<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int k = 0; k < result.length; k += 1) {
+            Integer id = ids.putIfAbsent(lines.get(k), ids.size());
+            if (id == null) {
+                id = ids.size() - 1;
+            }
+            result[k] = id;
+        }
+        return result;
+    }
+
+    /** Returns a shortest list of Edits turning A into B, computed with
+     *  Myers' algorithm. */
+    List<Edit> myers() {
+        List<Edit> edits = new ArrayList<>();
+        myers(0, _a.length, 0, _b.length, edits);
+        return coalesce(edits);
+    }
+
+    /** Returns a list of Edits turning A into B, computed with the
+     *  histogram algorithm. */
+    List<Edit> histogram() {
+        List<Edit> edits = new ArrayList<>();
+        _head = new int[_distinct];
+        Arrays.fill(_head, -1);
+        _count = new int[_distinct];
+        _next = new int[_a.length];
+        ArrayList<int[]> regions = new ArrayList<>();
+        regions.add(new int[] { 0, _a.length, 0, _b.length });
+        while (!regions.isEmpty()) {
+            int[] r = trim(regions.remove(regions.size() - 1));
+            if (r[0] == r[1] || r[2] == r[3]) {
+                addEdit(r[0], r[1], r[2], r[3], edits);
+                continue;
+            }
+            int[] anchor = anchor(r[0], r[1], r[2], r[3]);
+            if (anchor == null) {
+                myers(r[0], r[1], r[2], r[3], edits);
+            } else {
+                regions.add(new int[] { anchor[1], r[1], anchor[3], r[3] });
+                regions.add(new int[] { r[0], anchor[0], r[2], anchor[2] });
+            }
+        }
+        return coalesce(edits);
+    }
+
+    /** Returns the longest common run of lines A[A0 .. A1) = B[B0 .. B1),
+     *  as { A0, A1, B0, B1 }, within lines ALO .. AHI of A and BLO .. BHI
+     *  of B that contains a line occurring in A least often, and at
+     *  most MAX_CHAIN times, or null if there is none. */
+    private int[] anchor(int aLo, int aHi, int bLo, int bHi) {
+        for (int i = aHi - 1; i >= aLo; i -= 1) {
+            _next[i] = _head[_a[i]];
+            _head[_a[i]] = i;
+            _count[_a[i]] += 1;
+        }
+        int[] best = null;
+        int bestCount = MAX_CHAIN;
+        for (int j = bLo; j < bHi;) {
+            int skip = j + 1;
+            int count = _count[_b[j]];
+            if (count > 0 && count <= bestCount) {
+                for (int i = _head[_b[j]]; i >= 0; i = _next[i]) {
+                    int[] run = extend(i, j, aLo, aHi, bLo, bHi);
+                    int runCount = run[4];
+                    if (runCount < bestCount
+                        || (runCount == bestCount
+                            && (best == null
+                                || run[1] - run[0] > best[1] - best[0]))) {
+                        best = run;
+                        bestCount = runCount;
+                    }
+                    skip = Math.max(skip, run[3]);
+                }
+            }
+            j = skip;
+        }
+        for (int i = aLo; i < aHi; i += 1) {
+            _head[_a[i]] = -1;
+            _count[_a[i]] = 0;
+        }
+        return best;
+    }
+
+    /** Returns the run of lines common to A and B through A[I] = B[J],
+     *  within lines ALO .. AHI of A and BLO .. BHI of B, as { A0, A1,
+     *  B0, B1, C }, where C is the least number of times any line of
+     *  the run occurs in A. */
+    private int[] extend(int i, int j, int aLo, int aHi, int bLo, int bHi) {
+        int count = _count[_a[i]];
+        int a0 = i;
+        int b0 = j;
+        while (a0 > aLo && b0 > bLo && _a[a0 - 1] == _b[b0 - 1]) {
+            a0 -= 1;
+            b0 -= 1;
+            count = Math.min(count, _count[_a[a0]]);
+        }
+        int a1 = i + 1;
+        int b1 = j + 1;
+        while (a1 < aHi && b1 < bHi && _a[a1] == _b[b1]) {
+            count = Math.min(count, _count[_a[a1]]);
+            a1 += 1;
+            b1 += 1;
+        }
+        return new int[] { a0, a1, b0, b1, count };
+    }
+
+    /** Add to EDITS a shortest list of Edits turning lines ALO .. AHI of
+     *  A into lines BLO .. BHI of B. */
+    private void myers(int aLo, int aHi, int bLo, int bHi, List<Edit> edits) {
+        if (_forward == null) {
+            _forward = new int[_a.length + _b.length + 2];
+            _backward = new int[_a.length + _b.length + 2];
+        }
+        ArrayList<int[]> regions = new ArrayList<>();
+        regions.add(new int[] { aLo, aHi, bLo, bHi });
+        while (!regions.isEmpty()) {
+            int[] r = trim(regions.remove(regions.size() - 1));
+            if (r[0] == r[1] || r[2] == r[3]) {
+                addEdit(r[0], r[1], r[2], r[3], edits);
+                continue;
+            }
+            int[] split = middleSnake(r[0], r[1], r[2], r[3]);
+            if (split == null) {
+                addEdit(r[0], r[1], r[2], r[3], edits);
+            } else {
+                regions.add(new int[] { split[0], r[1], split[1], r[3] });
+                regions.add(new int[] { r[0], split[0], r[2], split[1] });
+            }
+        }
+    }
+
+    /** Returns the point { X, Y } at which a shortest edit path from
+     *  (ALO, BLO) to (AHI, BHI) crosses the middle of its length, found
+     *  by extending furthest-reaching paths forward from the start and
+     *  backward from the end until they overlap.  The first and last
+     *  lines of the two regions must differ, so that the point splits
+     *  the region into two smaller ones.  Returns null if no such point
+     *  is found. */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD;
+        int[] forward = _forward;
+        int[] backward = _backward;
+        Arrays.fill(forward, 0, length, -1);
+        Arrays.fill(backward, 0, length, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int fStart = 0;
+        int fEnd = 0;
+        int bStart = 0;
+        int bEnd = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                int x;
+                if (k == -d || (k != d && forward[offset + k - 1]
+                                          < forward[offset + k + 1])) {
+                    x = forward[offset + k + 1];
+                } else {
+                    x = forward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[offset + k] = x;
+                if (x > n) {
+                    fEnd += 2;
+                } else if (y > m) {
+                    fStart += 2;
+                } else if (odd) {
+                    int k2 = offset + delta - k;
+                    if (k2 >= 0 && k2 < length && backward[k2] != -1
+                        && x >= n - backward[k2]) {
+                        return new int[] { aLo + x, bLo + y };
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                int x;
+                if (k == -d || (k != d && backward[offset + k - 1]
+                                          < backward[offset + k + 1])) {
+                    x = backward[offset + k + 1];
+                } else {
+                    x = backward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m
+                       && _a[aHi - x - 1] == _b[bHi - y - 1]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[offset + k] = x;
+                if (x > n) {
+                    bEnd += 2;
+                } else if (y > m) {
+                    bStart += 2;
+                } else if (!odd) {
+                    int k1 = offset + delta - k;
+                    if (k1 >= 0 && k1 < length && forward[k1] != -1) {
+                        int x1 = forward[k1];
+                        if (x1 >= n - x) {
+                            return new int[] { aLo + x1,
+                                               bLo + offset + x1 - k1 };
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns region R = { ALO, AHI, BLO, BHI }, narrowed to exclude the
+     *  lines common to the starts and to the ends of its parts of A and
+     *  B. */
+    private int[] trim(int[] r) {
+        while (r[0] < r[1] && r[2] < r[3] && _a[r[0]] == _b[r[2]]) {
+            r[0] += 1;
+            r[2] += 1;
+        }
+        while (r[0] < r[1] && r[2] < r[3]
+               && _a[r[1] - 1] == _b[r[3] - 1]) {
+            r[1] -= 1;
+            r[3] -= 1;
+        }
+        return r;
+    }
+
+    /** Add to EDITS the replacement of lines ALO .. AHI of A by lines
+     *  BLO .. BHI of B, unless both are empty. */
+    private static void addEdit(int aLo, int aHi, int bLo, int bHi,
+                                List<Edit> edits) {
+        if (aLo < aHi || bLo < bHi) {
+            edits.add(new Edit(aLo, aHi, bLo, bHi));
+        }
+    }
+
+    /** Returns EDITS in order, with adjacent edits joined. */
+    private static List<Edit> coalesce(List<Edit> edits) {
+        edits.sort(Comparator.comparingInt(Edit::getBeginA)
+                   .thenComparingInt(Edit::getBeginB));
+        List<Edit> result = new ArrayList<>();
+        for (Edit edit : edits) {
+            int last = result.size() - 1;
+            if (last >= 0 && result.get(last).getEndA() == edit.getBeginA()
+                && result.get(last).getEndB() == edit.getBeginB()) {
+                Edit prev = result.get(last);
+                result.set(last, new Edit(prev.getBeginA(), edit.getEndA(),
+                                          prev.getBeginB(), edit.getEndB()));
+            } else {
+                result.add(edit);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Print on OUT the hunks of a unified diff showing EDITS, as
+     *  returned by myers or histogram, with CONTEXT unchanged lines
+     *  around each change.  Changes separated by no more than 2 *
+     *  CONTEXT unchanged lines share a hunk. */
+    void printUnified(List<Edit> edits, int context, PrintStream out) {
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size()
+                   && edits.get(last + 1).getBeginA()
+                      - edits.get(last).getEndA() <= 2 * context) {
+                last += 1;
+            }
+            printHunk(edits.subList(first, last + 1), context, out);
+            first = last + 1;
+        }
+    }
+
+    /** Print on OUT one hunk showing EDITS, with CONTEXT unchanged lines
+     *  before and after. */
+    private void printHunk(List<Edit> edits, int context, PrintStream out) {
+        Edit head = edits.get(0);
+        Edit tail = edits.get(edits.size() - 1);
+        int aStart = Math.max(0, head.getBeginA() - context);
+        int bStart = head.getBeginB() - (head.getBeginA() - aStart);
+        int aEnd = Math.min(_a.length, tail.getEndA() + context);
+        int bEnd = tail.getEndB() + (aEnd - tail.getEndA());
+        StringBuilder hunk = new StringBuilder();
+        hunk.append("@@ -").append(range(aStart, aEnd)).append(" +")
+            .append(range(bStart, bEnd)).append(" @@\n");
+        int i = aStart;
+        for (Edit edit : edits) {
+            for (; i < edit.getBeginA(); i += 1) {
+                appendLine(hunk, ' ', _lines.get(i));
+            }
+            for (; i < edit.getEndA(); i += 1) {
+                appendLine(hunk, '-', _lines.get(i));
+            }
+            for (int j = edit.getBeginB(); j < edit.getEndB(); j += 1) {
+                appendLine(hunk, '+', _otherLines.get(j));
+            }
+        }
+        for (; i < aEnd; i += 1) {
+            appendLine(hunk, ' ', _lines.get(i));
+        }
+        out.print(hunk);
+    }
+
+    /** Returns the range of lines START .. END (0-based, END exclusive)
+     *  as written in a hunk header. */
+    private static String range(int start, int end) {
+        if (end - start == 1) {
+            return Integer.toString(start + 1);
+        } else if (end == start) {
+            return start + ",0";
+        }
+        return (start + 1) + "," + (end - start);
+    }
+
+    /** Append LINE to HUNK, preceded by MARK, noting if it lacks a
+     *  final newline. */
+    private static void appendLine(StringBuilder hunk, char mark,
+                                   String line) {
+        hunk.append(mark).append(line);
+        if (!line.endsWith("\n")) {
+            hunk.append("\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** The replacement of lines BEGINA .. ENDA (exclusive) of A by lines
+     *  BEGINB .. ENDB of B.  Either range may be empty, for a pure
+     *  insertion or deletion. */
+    static class Edit {
+        /** The edit replacing lines BEGINA .. ENDA of A by lines
+         *  BEGINB .. ENDB of B. */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            this.beginA = beginA;
+            this.endA = endA;
+            this.beginB = beginB;
+            this.endB = endB;
+        }
+
+        /** Returns the index of the first line of A replaced. */
+        int getBeginA() {
+            return beginA;
+        }
+
+        /** Returns the index just past the last line of A replaced. */
+        int getEndA() {
+            return endA;
+        }
+
+        /** Returns the index of the first line of B inserted. */
+        int getBeginB() {
+            return beginB;
+        }
+
+        /** Returns the index just past the last line of B inserted. */
+        int getEndB() {
+            return endB;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Edit[%d-%d, %d-%d]", beginA, endA,
+                                 beginB, endB);
+        }
+
+        /** First line of A replaced. */
+        private final int beginA;
+        /** Just past the last line of A replaced. */
+        private final int endA;
+        /** First line of B inserted. */
+        private final int beginB;
+        /** Just past the last line of B inserted. */
+        private final int endB;
+    }
+
+    /** The lines of A. */
+    private final List<String> _lines;
+    /** The lines of B. */
+    private final List<String> _otherLines;
+    /** The IDs of the lines of A. */
+    private final int[] _a;
+    /** The IDs of the lines of B. */
+    private final int[] _b;
+    /** The number of distinct lines in A and B. */
+    private final int _distinct;
+    /** The furthest-reaching forward paths of middleSnake, by diagonal. */
+    private int[] _forward;
+    /** The furthest-reaching backward paths of middleSnake. */
+    private int[] _backward;
+    /** For histogram: the first position of each line ID in the current
+     *  region of A, or -1. */
+    private int[] _head;
+    /** For histogram: the next position of the same line in A. */
+    private int[] _next;
+    /** For histogram: the number of occurrences of each line ID in the
+     *  current region of A. */
+    private int[] _count;
+}
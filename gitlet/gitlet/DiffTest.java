@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Tests of the diff algorithms of Diff and of its unified diffs. */
+public class DiffTest {
+
+    /** Returns N random lines drawn from the first K of a few short
+     *  lines, so that texts share many lines, often repeated. */
+    private static List<String> text(Random random, int n, int k) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            result.add((char) ('a' + random.nextInt(k)) + "\n");
+        }
+        return result;
+    }
+
+    /** Returns B made from A by a few random insertions, deletions and
+     *  changes of lines. */
+    private static List<String> edit(Random random, List<String> a) {
+        List<String> result = new ArrayList<>(a);
+        for (int n = random.nextInt(6); n > 0; n -= 1) {
+            int at = random.nextInt(result.size() + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    result.add(at, "new " + n + "\n");
+                    break;
+                case 1:
+                    if (at < result.size()) {
+                        result.remove(at);
+                    }
+                    break;
+                default:
+                    if (at < result.size()) {
+                        result.set(at, "changed " + n + "\n");
+                    }
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the length of a longest common subsequence of A and B,
+     *  found by dynamic programming. */
+    private static int lcs(List<String> a, List<String> b) {
+        int[][] len = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i -= 1) {
+            for (int j = b.size() - 1; j >= 0; j -= 1) {
+                if (a.get(i).equals(b.get(j))) {
+                    len[i][j] = len[i + 1][j + 1] + 1;
+                } else {
+                    len[i][j] = Math.max(len[i + 1][j], len[i][j + 1]);
+                }
+            }
+        }
+        return len[0][0];
+    }
+
+    /** Assert that EDITS, in order and not overlapping or touching, turn
+     *  A into B, and return the number of lines they delete and
+     *  insert. */
+    private static int checkEdits(List<Diff.Edit> edits, List<String> a,
+                                  List<String> b) {
+        int i = 0;
+        int j = 0;
+        int cost = 0;
+        List<String> result = new ArrayList<>();
+        for (Diff.Edit edit : edits) {
+            assertTrue(edit.toString(), edit.getBeginA() >= i
+                       && edit.getBeginB() >= j
+                       && edit.getEndA() >= edit.getBeginA()
+                       && edit.getEndB() >= edit.getBeginB());
+            assertEquals("gap before " + edit, edit.getBeginA() - i,
+                         edit.getBeginB() - j);
+            assertTrue("empty " + edit, edit.getEndA() > edit.getBeginA()
+                       || edit.getEndB() > edit.getBeginB());
+            assertTrue("not coalesced: " + edit,
+                       i == 0 && j == 0 || edit.getBeginA() > i);
+            result.addAll(a.subList(i, edit.getBeginA()));
+            result.addAll(b.subList(edit.getBeginB(), edit.getEndB()));
+            cost += edit.getEndA() - edit.getBeginA()
+                + edit.getEndB() - edit.getBeginB();
+            i = edit.getEndA();
+            j = edit.getEndB();
+        }
+        assertEquals(a.size() - i, b.size() - j);
+        result.addAll(a.subList(i, a.size()));
+        assertEquals(b, result);
+        return cost;
+    }
+
+    @Test
+    public void myersIsMinimal() {
+        Random random = new Random(61);
+        for (int t = 0; t < 2000; t += 1) {
+            int k = 1 + random.nextInt(6);
+            List<String> a = text(random, random.nextInt(40), k);
+            List<String> b;
+            if (random.nextBoolean()) {
+                b = text(random, random.nextInt(40), k);
+            } else {
+                b = edit(random, a);
+            }
+            int cost = checkEdits(new Diff(a, b).myers(), a, b);
+            assertEquals(a + " -> " + b,
+                         a.size() + b.size() - 2 * lcs(a, b), cost);
+        }
+    }
+
+    @Test
+    public void histogramIsCorrect() {
+        Random random = new Random(62);
+        for (int t = 0; t < 2000; t += 1) {
+            int k = 1 + random.nextInt(20);
+            List<String> a = text(random, random.nextInt(80), k);
+            List<String> b;
+            if (random.nextBoolean()) {
+                b = text(random, random.nextInt(80), k);
+            } else {
+                b = edit(random, a);
+            }
+            int cost = checkEdits(new Diff(a, b).histogram(), a, b);
+            assertTrue(cost >= a.size() + b.size() - 2 * lcs(a, b));
+        }
+    }
+
+    @Test
+    public void histogramKeepsUniqueLinesTogether() {
+        List<String> a = new ArrayList<>();
+        for (int i = 0; i < 30; i += 1) {
+            a.add("line " + i + "\n");
+        }
+        List<String> b = new ArrayList<>(a.subList(20, 30));
+        b.addAll(a.subList(0, 20));
+        List<Diff.Edit> edits = new Diff(a, b).histogram();
+        assertEquals(20, checkEdits(edits, a, b));
+        assertEquals(2, edits.size());
+        assertEquals(0, edits.get(0).getEndA());
+        assertEquals(20, edits.get(1).getBeginA());
+    }
+
+    @Test
+    public void identicalAndEmptyTexts() {
+        List<String> a = Diff.lines("x\ny\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(new Diff(a, a).myers().isEmpty());
+        assertTrue(new Diff(a, a).histogram().isEmpty());
+        assertEquals(2, checkEdits(new Diff(a, List.of()).myers(),
+                                   a, List.of()));
+        assertEquals(2, checkEdits(new Diff(List.of(), a).histogram(),
+                                   List.of(), a));
+        assertTrue(new Diff(List.of(), List.of()).myers().isEmpty());
+    }
+
+    @Test
+    public void printsUnifiedDiff() {
+        List<String> a = Diff.lines("a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\n"
+                                    .getBytes(StandardCharsets.UTF_8));
+        List<String> b = Diff.lines("a\nB\nc\nd\ne\nf\ng\nh\ni\nj\nk"
+                                    .getBytes(StandardCharsets.UTF_8));
+        Diff diff = new Diff(a, b);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        diff.printUnified(diff.myers(), Diff.CONTEXT, new PrintStream(bytes));
+        assertEquals("@@ -1,5 +1,5 @@\n a\n-b\n+B\n c\n d\n e\n"
+                     + "@@ -8,4 +8,4 @@\n h\n i\n j\n-k\n+k\n"
+                     + "\\ No newline at end of file\n",
+                     bytes.toString());
+    }
+}
@@ -5,8 +5,11 @@ import java.io.File;
 /** A debugging class whose main program may be invoked as follows:
  *      java gitlet.DumpObj FILE...
  *  where each FILE is a file produced by Utils.writeObject (or any file
- *  containing a serialized object).  This will simply read FILE,
- *  deserialize it, and call the dump method on the resulting Object.
+ *  containing a serialized object), or a loose object written by an
+ *  ObjectStore.  This will simply read FILE, decompress it if need be,
+ *  decode it (as a Commit or Tree if it is in Commit's or Tree's binary
+ *  encoding, and otherwise by deserializing it), and call the dump
+ *  method on the resulting Object.
  *  The object must implement the gitlet.Dumpable interface for this
  *  to work.  For example, you might define your class like this:
  *
@@ -33,8 +36,17 @@ public class DumpObj {
      *  in FILES. */
     public static void main(String... files) {
         for (String fileName : files) {
-            Dumpable obj = Utils.readObject(new File(fileName),
-                                            Dumpable.class);
+            byte[] contents = Utils.readContents(new File(fileName));
+            if (ObjectCodec.isEncoded(contents)) {
+                contents = ObjectCodec.decode(contents);
+            }
+            Dumpable obj = Commit.parse(contents);
+            if (obj == null) {
+                obj = Tree.parse(contents);
+            }
+            if (obj == null) {
+                obj = Utils.deserialize(contents, Dumpable.class);
+            }
             obj.dump();
             System.out.println("---");
         }
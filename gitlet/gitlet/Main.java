@@ -1,5 +1,10 @@
 package gitlet;
 
+import java.util.Arrays;
+
+import static gitlet.Utils.error;
+import static gitlet.Utils.message;
+
 /** Driver class for Gitlet, a subset of the Git version-control system.
  *  @author TODO
  */
@@ -9,7 +14,45 @@ public class Main {
      *  <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            message(excp.getMessage());
+            System.exit(0);
+        }
+    }
+
+    /** Execute the command given by ARGS.  A command that fails throws a
+     *  GitletException whose message is the error to print; commands
+     *  never exit the JVM themselves, so that a Server can run them.  The
+     *  Metrics of the command are logged if enabled. */
+    static void run(String[] args) {
+        Metrics.run(args, metrics -> execute(args, metrics));
+    }
+
+    /** Execute the command given by ARGS, as for run, counting its work
+     *  in METRICS.  Each command runs holding the RepositoryLock
+     *  appropriate to it, inside a Trace, and reads and writes objects
+     *  through a single ObjectStore, which carries the Trace and METRICS
+     *  to the code doing the work. */
+    private static void execute(String[] args, Metrics metrics) {
         // TODO: what if args is empty?
+        String firstArg = args[0];
+        try (Trace trace = Trace.start(args)) {
+            RepositoryLock lock = Repository.lock(firstArg);
+            try {
+                dispatch(args, Repository.objects(trace, metrics));
+            } finally {
+                if (lock != null) {
+                    lock.close();
+                }
+            }
+        }
+    }
+
+    /** Perform the command given by ARGS, reading and writing objects
+     *  through STORE. */
+    private static void dispatch(String[] args, ObjectStore store) {
         String firstArg = args[0];
         switch(firstArg) {
             case "init":
@@ -18,6 +61,29 @@ public class Main {
             case "add":
                 // TODO: handle the `add [filename]` command
                 break;
+            case "log":
+                Repository.log(store,
+                               Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "global-log":
+                Repository.globalLog(store);
+                break;
+            case "find":
+                if (args.length != 2) {
+                    throw error("Incorrect operands.");
+                }
+                Repository.find(store, args[1]);
+                break;
+            case "diff":
+                Repository.diff(store,
+                                Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "gc":
+                Repository.gc(store);
+                break;
+            case "serve":
+                Server.serve();
+                break;
             // TODO: FILL THE REST IN
         }
     }
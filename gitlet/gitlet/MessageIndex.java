@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** An inverted index from commit messages to the commits that bear
+ *  them, with which find looks at only the commits it reports rather
+ *  than at every commit.
+ *
+ *  Messages are indexed by a 64-bit hash.  After a header (MAGIC,
+ *  VERSION, the stamp of the manifest indexed and the number of sorted
+ *  entries) the file holds fixed-width
+ *  entries, each a message hash (long) and the offset (int) in the
+ *  CommitManifest of the record of a commit with that message: first a
+ *  run sorted by hash and offset, then a tail appended, unsorted, as
+ *  commits are made, which the next commit merges into the run once it
+ *  reaches MAX_TAIL entries.  Hashes can collide, so callers compare the
+ *  messages of the records found with the one sought.  The index has one
+ *  entry per record of the manifest, so it is current exactly when it
+ *  has the manifest's stamp and as many entries as the manifest has
+ *  records.
+ */
+class MessageIndex {
+
+    /** Magic number at the start of the file ("GMSG"). */
+    static final int MAGIC = 0x474d5347;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the header in bytes. */
+    static final int HEADER = 3 * Integer.BYTES + Long.BYTES;
+    /** Position in the header of the manifest stamp, which is followed
+     *  by the number of sorted entries. */
+    private static final int STAMP = 2 * Integer.BYTES;
+    /** Size of an entry in bytes. */
+    static final int ENTRY = Long.BYTES + Integer.BYTES;
+    /** Largest number of unsorted entries kept after the sorted run. */
+    static final int MAX_TAIL = 256;
+    /** Initial value of the FNV-1a hash. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /** Multiplier of the FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The index held in FILE, mapped into memory.  Throws
+     *  IllegalArgumentException if FILE is missing or malformed. */
+    MessageIndex(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        if (_data.limit() < HEADER || _data.getInt(0) != MAGIC
+            || _data.getInt(Integer.BYTES) != VERSION
+            || (_data.limit() - HEADER) % ENTRY != 0) {
+            throw new IllegalArgumentException("bad message index " + file);
+        }
+        _size = (_data.limit() - HEADER) / ENTRY;
+        _stamp = _data.getLong(STAMP);
+        _sorted = _data.getInt(STAMP + Long.BYTES);
+        if (_sorted < 0 || _sorted > _size) {
+            throw new IllegalArgumentException("bad message index " + file);
+        }
+    }
+
+    /** Returns the index kept in FILE of the messages in MANIFEST,
+     *  rebuilding FILE first if it is missing, unreadable or out of
+     *  date, counting its work in METRICS. */
+    static MessageIndex open(File file, CommitManifest manifest,
+                             Metrics metrics) {
+        if (file.isFile()) {
+            try {
+                MessageIndex result = new MessageIndex(file);
+                if (result.indexes(manifest)) {
+                    return result;
+                }
+            } catch (IllegalArgumentException excp) {
+                file.delete();
+            }
+        }
+        rebuild(file, manifest, metrics);
+        return new MessageIndex(file);
+    }
+
+    /** Returns true iff this index covers exactly the records of
+     *  MANIFEST. */
+    private boolean indexes(CommitManifest manifest) {
+        return _stamp == manifest.stamp() && _size == manifest.size();
+    }
+
+    /** Returns the offsets, in increasing order, of the manifest records
+     *  whose messages may be MESSAGE: all those whose messages hash
+     *  alike. */
+    List<Integer> candidates(String message) {
+        long key = hash(message);
+        List<Integer> result = new ArrayList<>();
+        int lo = 0;
+        int hi = _sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_data.getLong(pos(mid)) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < _sorted && _data.getLong(pos(k)) == key;
+             k += 1) {
+            result.add(offset(k));
+        }
+        for (int k = _sorted; k < _size; k += 1) {
+            if (_data.getLong(pos(k)) == key) {
+                result.add(offset(k));
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** Returns the manifest offset in the Kth entry. */
+    private int offset(int k) {
+        return _data.getInt(pos(k) + Long.BYTES);
+    }
+
+    /** Returns the position in the file of the Kth entry. */
+    private static int pos(int k) {
+        return HEADER + k * ENTRY;
+    }
+
+    /** Returns the 64-bit FNV-1a hash of the UTF-8 bytes of MESSAGE. */
+    static long hash(String message) {
+        long h = FNV_OFFSET;
+        for (byte b : message.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /** Add to the index in FILE the record at OFFSET of MANIFEST, just
+     *  appended to it, or rebuild FILE from MANIFEST instead if it is
+     *  missing or does not index exactly the records before OFFSET.  An
+     *  OFFSET of -1 means no record was appended.  The work is counted in
+     *  METRICS. */
+    static void append(File file, CommitManifest manifest, int offset,
+                       Metrics metrics) {
+        MessageIndex index;
+        try {
+            index = new MessageIndex(file);
+        } catch (IllegalArgumentException excp) {
+            rebuild(file, manifest, metrics);
+            return;
+        }
+        if (index.indexes(manifest)) {
+            return;
+        }
+        if (offset < 0 || index._stamp != manifest.stamp()
+            || index._size != manifest.size() - 1) {
+            rebuild(file, manifest, metrics);
+            return;
+        }
+        long key = hash(manifest.message(offset));
+        if (index._size - index._sorted >= MAX_TAIL) {
+            List<long[]> entries = index.entries();
+            entries.add(new long[] { key, offset });
+            write(file, manifest, entries, metrics);
+            return;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY);
+        entry.putLong(key).putInt(offset).flip();
+        try (FileChannel channel = FileChannel.open(
+                 file.toPath(), StandardOpenOption.APPEND)) {
+            channel.write(entry);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Returns the entries of this index as (hash, offset) pairs. */
+    private List<long[]> entries() {
+        List<long[]> result = new ArrayList<>(_size + 1);
+        for (int k = 0; k < _size; k += 1) {
+            result.add(new long[] { _data.getLong(pos(k)), offset(k) });
+        }
+        return result;
+    }
+
+    /** Write to FILE an index of the messages in MANIFEST, counting the
+     *  work in METRICS. */
+    static void rebuild(File file, CommitManifest manifest,
+                        Metrics metrics) {
+        List<long[]> entries = new ArrayList<>(manifest.size());
+        for (int offset = manifest.first(); !manifest.atEnd(offset);
+             offset = manifest.next(offset)) {
+            entries.add(new long[] { hash(manifest.message(offset)),
+                                     offset });
+        }
+        write(file, manifest, entries, metrics);
+    }
+
+    /** Durably replace FILE with an index of MANIFEST whose sorted run
+     *  holds ENTRIES, counting the work in METRICS. */
+    private static void write(File file, CommitManifest manifest,
+                              List<long[]> entries, Metrics metrics) {
+        entries.sort((e0, e1) -> {
+            int c = Long.compare(e0[0], e1[0]);
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(e0[1], e1[1]);
+        });
+        try {
+            File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                            file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(
+                         temp.toPath()), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(manifest.stamp());
+                out.writeInt(entries.size());
+                for (long[] e : entries) {
+                    out.writeLong(e[0]);
+                    out.writeInt((int) e[1]);
+                }
+            }
+            WriteBatch batch = new WriteBatch(metrics);
+            batch.add(temp, file);
+            batch.commit();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** The file, mapped into memory. */
+    private final MappedByteBuffer _data;
+    /** The stamp of the manifest indexed. */
+    private final long _stamp;
+    /** Number of entries in the file. */
+    private final int _size;
+    /** Number of entries in the sorted run at the start of the file. */
+    private final int _sorted;
+}
@@ -0,0 +1,172 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/** Counters of the work done by one command, appended when it finishes
+ *  as one line of JSON to a log for dashboards to collect.
+ *
+ *  Main makes the Metrics of each command and passes them, in the
+ *  command's ObjectStore, to the objects that do the counting
+ *  (ObjectStore, PackFile, StagingArea and WriteBatch), which count by
+ *  adding to the plain long fields below, so counting costs next to
+ *  nothing.  Objects made outside of commands, as by tools and
+ *  benchmarks, count into Metrics that nobody reports.  Counters are
+ *  not synchronized: work done on a TreeScanner's threads is counted by
+ *  the thread that handed it out, once the work is done.
+ *
+ *  Metrics are logged to Repository.METRICS_LOG, or to the file named
+ *  by the environment variable Repository.METRICS_VAR, which turns them
+ *  off if it is 0; commands run outside a repository log nothing by
+ *  default.  Each line holds the time the command started, its name
+ *  (without its operands), its status (ok, error for a Gitlet error, or
+ *  failed), its wall-clock time and CPU time in milliseconds, and the
+ *  counters, as in
+ *      {"time":"2026-01-01T12:00:00Z","command":"log","status":"ok",
+ *       "wall_ms":12.5,"cpu_ms":10.1,"objects_read":11,...}
+ *  (all on one line).  Each line is appended with a single write, so
+ *  lines from commands run at once do not interleave.
+ *
+ *  cpu_ms is the CPU time of the thread that ran the command only.  The
+ *  files that a TreeScanner stats and hashes on its pool's threads (as
+ *  add and status do) are not in it, so for such commands it understates
+ *  the CPU used, while wall_ms covers all of it.  The process's CPU time
+ *  would instead include the JVM's own threads (compiler, collector)
+ *  and, in a Server, work done between commands.
+ */
+class Metrics {
+
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /** Objects read from an ObjectStore. */
+    long objectsRead;
+    /** Objects added to an ObjectStore (not counting those already
+     *  present). */
+    long objectsWritten;
+    /** Bytes of file and object contents hashed. */
+    long bytesHashed;
+    /** Working files whose blob UIDs were found in the stat cache of the
+     *  StagingArea. */
+    long statCacheHits;
+    /** Working files that had to be hashed because the stat cache did not
+     *  hold their blob UIDs. */
+    long statCacheMisses;
+    /** Deltified objects whose contents were found in a PackFile's
+     *  cache. */
+    long packCacheHits;
+    /** Deltified objects whose contents had to be rebuilt. */
+    long packCacheMisses;
+    /** Working files stat'ed. */
+    long filesStated;
+    /** Files and directories forced to disk. */
+    long fsyncs;
+
+    /** Run COMMAND, the command given by ARGS, on this thread, passing it
+     *  the Metrics to count into, and log them if they are enabled.  Any
+     *  exception COMMAND throws is rethrown. */
+    static void run(String[] args, Consumer<Metrics> command) {
+        Metrics metrics = new Metrics();
+        File log = log(args);
+        if (log == null) {
+            command.accept(metrics);
+            return;
+        }
+        Instant time = Instant.now();
+        long start = System.nanoTime();
+        long cpuStart = cpuNanos();
+        String status = "failed";
+        try {
+            command.accept(metrics);
+            status = "ok";
+        } catch (GitletException excp) {
+            status = "error";
+            throw excp;
+        } finally {
+            metrics.append(log, time, args[0], status,
+                           System.nanoTime() - start, cpuNanos() - cpuStart);
+        }
+    }
+
+    /** Returns the file to which to append the metrics of the command
+     *  given by ARGS, or null if they are not to be logged. */
+    private static File log(String[] args) {
+        String setting = System.getenv(Repository.METRICS_VAR);
+        if (args.length == 0 || args[0].equals("serve")
+            || "0".equals(setting)) {
+            return null;
+        }
+        if (setting == null || setting.isEmpty()) {
+            return Repository.METRICS_LOG;
+        }
+        return new File(setting);
+    }
+
+    /** Returns the CPU time used by this thread so far in nanoseconds,
+     *  or 0 if it is not available. */
+    private static long cpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            return 0;
+        }
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    /** Append these metrics, as a line of JSON, to LOG, for a COMMAND
+     *  started at TIME that ended with STATUS, having taken WALLNANOS
+     *  nanoseconds of wall-clock time and CPUNANOS of CPU time.  A log
+     *  that cannot be written is reported on the standard error, but
+     *  never makes the command fail.  Nothing is logged to the default
+     *  log if there is no repository for it to go in. */
+    private void append(File log, Instant time, String command,
+                        String status, long wallNanos, long cpuNanos) {
+        if (log.equals(Repository.METRICS_LOG)
+            && !Repository.GITLET_DIR.isDirectory()) {
+            return;
+        }
+        String line = String.format(
+            Locale.ROOT,
+            "{\"time\":\"%s\",\"command\":%s,\"status\":\"%s\","
+            + "\"wall_ms\":%.3f,\"cpu_ms\":%.3f,\"objects_read\":%d,"
+            + "\"objects_written\":%d,\"bytes_hashed\":%d,"
+            + "\"stat_cache_hits\":%d,\"stat_cache_misses\":%d,"
+            + "\"pack_cache_hits\":%d,\"pack_cache_misses\":%d,"
+            + "\"files_stated\":%d,\"fsyncs\":%d}%n",
+            time, quote(command), status, wallNanos / NANOS_PER_MILLI,
+            cpuNanos / NANOS_PER_MILLI, objectsRead, objectsWritten,
+            bytesHashed, statCacheHits, statCacheMisses, packCacheHits,
+            packCacheMisses, filesStated, fsyncs);
+        try {
+            Files.write(log.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            System.err.println("metrics: " + excp.getMessage());
+        }
+    }
+
+    /** Returns S as a JSON string literal. */
+    static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int k = 0; k < s.length(); k += 1) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format(Locale.ROOT, "\\u%04x",
+                                            (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,283 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/** The stored form of Gitlet objects.  Each stored object begins with a
+ *  format byte: RAW if the rest is the object's contents unchanged,
+ *  DEFLATED if it is the contents compressed with Deflater, or
+ *  DEFLATED_DICT if it was compressed with DICTIONARY as the preset
+ *  dictionary.  Small objects (commits, trees, short files) share few
+ *  repeated strings with themselves, so priming the compressor with
+ *  bytes common to such objects is what lets them shrink at all.
+ *  Objects are kept RAW whenever compression would not make them
+ *  smaller.
+ */
+class ObjectCodec {
+
+    /** Format byte of contents stored unchanged. */
+    static final int RAW = 0;
+    /** Format byte of contents compressed without a dictionary. */
+    static final int DEFLATED = 1;
+    /** Format byte of contents compressed with DICTIONARY. */
+    static final int DEFLATED_DICT = 2;
+    /** Compression level that disables compression. */
+    static final int NO_COMPRESSION = Deflater.NO_COMPRESSION;
+    /** Objects shorter than this are compressed with DICTIONARY. */
+    static final int DICTIONARY_THRESHOLD = 4096;
+
+    /** Preset dictionary for small objects: byte strings common in
+     *  source text and in the encodings of commits and trees, most common
+     *  last.  The latter are the fixed parts of those encodings with the
+     *  leading zero bytes of small counts and lengths, the high bytes of
+     *  current timestamps, the entry headers of files and directories,
+     *  and common file names and commit messages.  Objects compressed
+     *  with it can only be read with exactly these contents, so it must
+     *  never change; a new dictionary needs a new format byte. */
+    static final String DICTIONARY =
+        "    }\n}\n  * @param @return @author  <p> TODO: "
+        + "#include <stdio.h> def self, __init__ import os "
+        + "function const let var => async await export default "
+        + "package import java.util.List; java.io.File; "
+        + "public private protected static final class interface "
+        + "extends implements throws throw new return void int long "
+        + "boolean char double String null true false if (else for ( "
+        + "while (switch case break continue try { } catch (finally "
+        + "this. = 0; i < i += 1) {\n        \n    /** */\n"
+        + "\1\0\11README.md\1\0\10Makefile\1\0\12.gitignore"
+        + "\2\0\3lib\2\0\4docs\2\0\4test\2\0\4main\2\0\3src"
+        + ".c.h.js.py.md.txt.java\1\0"
+        + "GTRE\1\0\0\0"
+        + "Fix Add Update Remove Change files Merge branch initial commit"
+        + "Merged  into .\0\0\1"
+        + "GCMT\2\0\0\0";
+
+    /** Returns the stored form of CONTENTS compressed at LEVEL (a Deflater
+     *  level, or NO_COMPRESSION), using DICTIONARY for small objects iff
+     *  USEDICTIONARY. */
+    static byte[] encode(byte[] contents, int level, boolean useDictionary) {
+        if (level != NO_COMPRESSION) {
+            boolean dict = useDictionary
+                && contents.length < DICTIONARY_THRESHOLD;
+            Deflater deflater = new Deflater(level);
+            try {
+                if (dict) {
+                    deflater.setDictionary(dictionary());
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (dict) {
+                    out.write(DEFLATED_DICT);
+                } else {
+                    out.write(DEFLATED);
+                }
+                deflater.setInput(contents);
+                deflater.finish();
+                byte[] buffer = new byte[Utils.BUFFER_SIZE];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                if (out.size() < contents.length + 1) {
+                    return out.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] result = new byte[contents.length + 1];
+        result[0] = RAW;
+        System.arraycopy(contents, 0, result, 1, contents.length);
+        return result;
+    }
+
+    /** Returns the contents of the object whose stored form is STORED.
+     *  Throws IllegalArgumentException if STORED is malformed. */
+    static byte[] decode(byte[] stored) {
+        if (stored.length == 0) {
+            throw new IllegalArgumentException("empty stored object");
+        }
+        if (stored[0] == RAW) {
+            byte[] result = new byte[stored.length - 1];
+            System.arraycopy(stored, 1, result, 0, result.length);
+            return result;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, 1, stored.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[Utils.BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(dictionary());
+                } else if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("truncated object");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Returns the first N bytes of the contents of the object whose
+     *  stored form is the remainder of STORED, or all of them if there
+     *  are fewer.  Only as much of STORED is inflated as is needed, so
+     *  asking for the first few bytes of a large object is cheap.  Throws
+     *  IllegalArgumentException if STORED is malformed. */
+    static byte[] decodePrefix(ByteBuffer stored, int n) {
+        if (!stored.hasRemaining()) {
+            throw new IllegalArgumentException("empty stored object");
+        }
+        byte format = stored.get();
+        if (format == RAW) {
+            byte[] result = new byte[Math.min(n, stored.remaining())];
+            stored.get(result);
+            return result;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] result = new byte[n];
+            int length = 0;
+            while (length < n && !inflater.finished()) {
+                int k = inflater.inflate(result, length, n - length);
+                if (k == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(dictionary());
+                } else if (k == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("truncated object");
+                }
+                length += k;
+            }
+            return Arrays.copyOf(result, length);
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Returns true iff STORED begins with a known format byte. */
+    static boolean isEncoded(byte[] stored) {
+        return stored.length > 0 && stored[0] >= RAW
+            && stored[0] <= DEFLATED_DICT;
+    }
+
+    /** Returns a stream that writes the stored form of whatever is
+     *  written to it, compressed at LEVEL without a dictionary, on OUT.
+     *  Used for objects too large to compress in memory. */
+    static OutputStream encodingStream(OutputStream out, int level)
+        throws IOException {
+        if (level == NO_COMPRESSION) {
+            out.write(RAW);
+            return out;
+        }
+        out.write(DEFLATED);
+        return new DeflaterOutputStream(out, new Deflater(level),
+                                        Utils.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                def.end();
+            }
+        };
+    }
+
+    /** Write the contents of the stored object occupying LENGTH bytes of
+     *  IN from position START onward to OUT, without holding them in
+     *  memory whole.  RAW contents are copied with FileChannel.transferTo,
+     *  so the kernel moves the bytes without passing them through the
+     *  heap; DEFLATED contents are inflated a buffer at a time between
+     *  direct buffers.  Only dictionary-compressed objects, which are
+     *  small, are decoded in memory.  Throws IllegalArgumentException if
+     *  the object is malformed. */
+    static void decodeTo(FileChannel in, long start, long length,
+                         WritableByteChannel out) throws IOException {
+        ByteBuffer format = ByteBuffer.allocate(1);
+        if (length < 1 || in.read(format, start) != 1) {
+            throw new IllegalArgumentException("empty stored object");
+        }
+        long pos = start + 1;
+        long end = start + length;
+        if (format.get(0) == RAW) {
+            while (pos < end) {
+                long n = in.transferTo(pos, end - pos, out);
+                if (n <= 0) {
+                    throw new IllegalArgumentException("truncated object");
+                }
+                pos += n;
+            }
+        } else if (format.get(0) == DEFLATED) {
+            inflateTo(in, pos, end, out);
+        } else {
+            ByteBuffer stored = ByteBuffer.allocate((int) length);
+            while (stored.hasRemaining()) {
+                if (in.read(stored, start + stored.position()) < 0) {
+                    throw new IllegalArgumentException("truncated object");
+                }
+            }
+            writeFully(out, ByteBuffer.wrap(decode(stored.array())));
+        }
+    }
+
+    /** Write the result of inflating bytes START .. END-1 of IN, a
+     *  Deflater stream without a dictionary, to OUT. */
+    private static void inflateTo(FileChannel in, long start, long end,
+                                  WritableByteChannel out)
+        throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer input = ByteBuffer.allocateDirect(Utils.BUFFER_SIZE);
+            ByteBuffer output = ByteBuffer.allocateDirect(Utils.BUFFER_SIZE);
+            long pos = start;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (pos >= end) {
+                        throw new IllegalArgumentException("truncated object");
+                    }
+                    input.clear();
+                    input.limit((int) Math.min(input.capacity(), end - pos));
+                    if (in.read(input, pos) < 0) {
+                        throw new IllegalArgumentException("truncated object");
+                    }
+                    pos += input.position();
+                    input.flip();
+                    inflater.setInput(input);
+                }
+                output.clear();
+                inflater.inflate(output);
+                output.flip();
+                writeFully(out, output);
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Write all of BUFFER to OUT. */
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /** Returns the bytes of DICTIONARY. */
+    private static byte[] dictionary() {
+        return DICTIONARY.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/** The UID of a Gitlet object: an immutable 20-byte SHA-1 hash.
+ *
+ *  The hash is held as two longs and an int, most significant bytes
+ *  first, so an ObjectId costs 40 bytes of heap rather than the 100 or
+ *  so of a 40-digit String, and comparing or hashing one is a few
+ *  machine operations.  ObjectIds order as unsigned numbers, which is
+ *  also the order of their hexadecimal numerals.  They are written in
+ *  binary to files and converted to hexadecimal only for file names and
+ *  output.
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** Version of this class for Java serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /** Length of an ObjectId in bytes. */
+    static final int BYTES = 20;
+    /** Length of an ObjectId as a hexadecimal numeral. */
+    static final int HEX_LENGTH = 2 * BYTES;
+    /** Hexadecimal digits by value. */
+    private static final String HEX_DIGITS = "0123456789abcdef";
+    /** Number of hexadecimal digits in a long. */
+    private static final int LONG_DIGITS = 2 * Long.BYTES;
+    /** Number of hexadecimal digits in an int. */
+    private static final int INT_DIGITS = 2 * Integer.BYTES;
+
+    /** The ObjectId whose bytes are those of W0, W1 and W2, most
+     *  significant first. */
+    private ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the ObjectId denoted by the 40-digit hexadecimal numeral
+     *  HEX.  Throws IllegalArgumentException if HEX is not one. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("not an object id: " + hex);
+        }
+        return new ObjectId(parseHex(hex, 0, LONG_DIGITS),
+                            parseHex(hex, LONG_DIGITS, LONG_DIGITS),
+                            (int) parseHex(hex, 2 * LONG_DIGITS, INT_DIGITS));
+    }
+
+    /** Returns true iff HEX is a 40-digit lower-case hexadecimal
+     *  numeral. */
+    static boolean isHex(String hex) {
+        if (hex.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            if (HEX_DIGITS.indexOf(hex.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the ObjectId in the BYTES bytes of DATA starting at
+     *  START. */
+    static ObjectId fromBytes(byte[] data, int start) {
+        return get(ByteBuffer.wrap(data), start);
+    }
+
+    /** Returns the ObjectId whose bytes are the digest computed by MD,
+     *  which is completed. */
+    static ObjectId of(MessageDigest md) {
+        return fromBytes(md.digest(), 0);
+    }
+
+    /** Returns the ObjectId in the BYTES bytes of BUFFER starting at
+     *  position POS. */
+    static ObjectId get(ByteBuffer buffer, int pos) {
+        return new ObjectId(buffer.getLong(pos),
+                            buffer.getLong(pos + Long.BYTES),
+                            buffer.getInt(pos + 2 * Long.BYTES));
+    }
+
+    /** Returns the ObjectId read from IN. */
+    static ObjectId read(DataInput in) throws IOException {
+        return new ObjectId(in.readLong(), in.readLong(), in.readInt());
+    }
+
+    /** Write this ObjectId on OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(_w0);
+        out.writeLong(_w1);
+        out.writeInt(_w2);
+    }
+
+    /** Put this ObjectId in BUFFER at its position, advancing it. */
+    void put(ByteBuffer buffer) {
+        buffer.putLong(_w0).putLong(_w1).putInt(_w2);
+    }
+
+    /** Returns true iff this ObjectId is in the BYTES bytes of BUFFER
+     *  starting at position POS. */
+    boolean isAt(ByteBuffer buffer, int pos) {
+        return buffer.getLong(pos) == _w0
+            && buffer.getLong(pos + Long.BYTES) == _w1
+            && buffer.getInt(pos + 2 * Long.BYTES) == _w2;
+    }
+
+    /** Returns a negative number, zero or a positive number as this
+     *  ObjectId orders before, with or after the one in the BYTES bytes
+     *  of BUFFER starting at position POS, without making an ObjectId of
+     *  the latter. */
+    int compareTo(ByteBuffer buffer, int pos) {
+        int c = Long.compareUnsigned(_w0, buffer.getLong(pos));
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, buffer.getLong(pos + Long.BYTES));
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2,
+                                        buffer.getInt(pos + 2 * Long.BYTES));
+        }
+        return c;
+    }
+
+    /** Returns the first byte of this ObjectId (0-255), by which fan-out
+     *  tables group ObjectIds. */
+    int firstByte() {
+        return (int) (_w0 >>> (Long.SIZE - Byte.SIZE));
+    }
+
+    /** Returns the bytes of this ObjectId. */
+    byte[] toBytes() {
+        ByteBuffer result = ByteBuffer.allocate(BYTES);
+        put(result);
+        return result.array();
+    }
+
+    /** Returns this ObjectId as a 40-digit hexadecimal numeral. */
+    String toHex() {
+        char[] result = new char[HEX_LENGTH];
+        formatHex(_w0, result, 0, LONG_DIGITS);
+        formatHex(_w1, result, LONG_DIGITS, LONG_DIGITS);
+        formatHex(_w2, result, 2 * LONG_DIGITS, INT_DIGITS);
+        return new String(result);
+    }
+
+    /** Returns the first N digits of the hexadecimal numeral of this
+     *  ObjectId. */
+    String abbreviate(int n) {
+        return toHex().substring(0, n);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return c;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> Integer.SIZE);
+    }
+
+    /** Returns the value of the N hexadecimal digits of HEX starting at
+     *  START. */
+    private static long parseHex(String hex, int start, int n) {
+        long result = 0;
+        for (int i = start; i < start + n; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("not an object id: "
+                                                   + hex);
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+
+    /** Write the low N hexadecimal digits of VALUE into DEST starting at
+     *  START. */
+    private static void formatHex(long value, char[] dest, int start,
+                                  int n) {
+        for (int i = start + n - 1; i >= start; i -= 1) {
+            dest[i] = HEX_DIGITS.charAt((int) value & 0xf);
+            value >>>= 4;
+        }
+    }
+
+    /** The first eight bytes. */
+    private final long _w0;
+    /** The next eight bytes. */
+    private final long _w1;
+    /** The last four bytes. */
+    private final int _w2;
+}
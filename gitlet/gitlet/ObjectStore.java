@@ -0,0 +1,547 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+import static gitlet.Utils.*;
+
+/** A content-addressed store of Gitlet objects (blobs and commits).
+ *  Each object is named by the SHA-1 UID of its contents.  New objects
+ *  are written "loose", one file each, in a two-level fan-out layout
+ *  beneath the store's root directory: the object with UID abcdef... is
+ *  kept in the file ab/cdef...  Keeping at most 1/256th of the objects in
+ *  any one directory means that lookups and listings stay cheap no matter
+ *  how many objects the repository holds.  The pack method gathers loose
+ *  objects into PackFiles in the pack subdirectory; reads consult the
+ *  packs first and then the loose objects.  Objects are kept in the
+ *  stored form defined by ObjectCodec, compressed at a configurable
+ *  level.  Callers deal only in UIDs and uncompressed contents; the
+ *  layout and encoding are private to this class.
+ */
+class ObjectStore {
+
+    /** Number of leading hex digits of a UID used to name the fan-out
+     *  directory that holds it. */
+    static final int FANOUT_DIGITS = 2;
+    /** Name of the subdirectory holding packs. */
+    static final String PACK_DIR = "pack";
+
+    /** A store rooted at directory ROOT, which need not exist yet, that
+     *  compresses new objects at LEVEL (a java.util.zip.Deflater level,
+     *  or ObjectCodec.NO_COMPRESSION to store them uncompressed), using
+     *  ObjectCodec's preset dictionary for small objects iff
+     *  USEDICTIONARY, recording its work in TRACE and counting it in
+     *  METRICS. */
+    ObjectStore(File root, int level, boolean useDictionary, Trace trace,
+                Metrics metrics) {
+        _root = root;
+        _level = level;
+        _useDictionary = useDictionary;
+        _trace = trace;
+        _metrics = metrics;
+        _digest = newSha1Digest();
+    }
+
+    /** A store rooted at directory ROOT that compresses new objects at
+     *  LEVEL, as for ObjectStore(ROOT, LEVEL, USEDICTIONARY, TRACE,
+     *  METRICS), and whose work is neither traced nor reported. */
+    ObjectStore(File root, int level, boolean useDictionary) {
+        this(root, level, useDictionary, new Trace(), new Metrics());
+    }
+
+    /** A store rooted at directory ROOT that compresses new objects at
+     *  the default level, with the dictionary. */
+    ObjectStore(File root) {
+        this(root, Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /** Returns the Trace recording the work of this store's command. */
+    Trace trace() {
+        return _trace;
+    }
+
+    /** Returns the Metrics counting the work of this store's command. */
+    Metrics metrics() {
+        return _metrics;
+    }
+
+    /** Returns true iff an object with UID ID is present. */
+    boolean contains(ObjectId id) {
+        return inPack(id) || fileFor(id).isFile();
+    }
+
+    /** Returns true iff one of the packs holds the object with UID ID. */
+    private boolean inPack(ObjectId id) {
+        for (PackFile pack : packs()) {
+            if (pack.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the contents of the object with UID ID.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    byte[] read(ObjectId id) {
+        Trace.Span span = _trace.span(Trace.OBJECT_READ);
+        byte[] result = find(id);
+        span.end(result.length, 1);
+        _metrics.objectsRead += 1;
+        return result;
+    }
+
+    /** Returns the contents of the object with UID ID, as for read. */
+    private byte[] find(ObjectId id) {
+        for (PackFile pack : packs()) {
+            byte[] contents = pack.read(id);
+            if (contents != null) {
+                return contents;
+            }
+        }
+        File file = fileFor(id);
+        if (file.isFile()) {
+            return ObjectCodec.decode(readContents(file));
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /** Returns the first N bytes of the contents of the object with UID
+     *  ID, or all of them if there are fewer.  Only as much of the stored
+     *  object is inflated as is needed, so reading the start of a large
+     *  blob costs little.  Throws IllegalArgumentException if there is no
+     *  such object. */
+    byte[] readPrefix(ObjectId id, int n) {
+        for (PackFile pack : packs()) {
+            byte[] contents = pack.readPrefix(id, n);
+            if (contents != null) {
+                return contents;
+            }
+        }
+        File file = fileFor(id);
+        if (file.isFile()) {
+            try (FileChannel in = FileChannel.open(file.toPath())) {
+                return ObjectCodec.decodePrefix(
+                    in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()), n);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp);
+            }
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /** Write the contents of the object with UID ID to FILE, creating or
+     *  overwriting it.  The contents are never held in memory whole
+     *  unless the object is a delta in a pack: stored bytes are copied or
+     *  inflated straight into a temporary file (see
+     *  ObjectCodec.decodeTo), which then replaces FILE.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    void copyTo(ObjectId id, File file) {
+        Trace.Span span = _trace.span(Trace.OBJECT_READ);
+        File temp = null;
+        try {
+            temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                       file.getAbsoluteFile().getParentFile());
+            try (FileChannel out = FileChannel.open(
+                     temp.toPath(), StandardOpenOption.WRITE)) {
+                copyContents(id, out);
+                span.end(out.size(), 1);
+            }
+            _metrics.objectsRead += 1;
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Write the contents of the object with UID ID to OUT. */
+    private void copyContents(ObjectId id, FileChannel out)
+        throws IOException {
+        for (PackFile pack : packs()) {
+            if (pack.copyTo(id, out)) {
+                return;
+            }
+        }
+        File source = fileFor(id);
+        if (source.isFile()) {
+            try (FileChannel in = FileChannel.open(source.toPath())) {
+                ObjectCodec.decodeTo(in, 0, in.size(), out);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /** Returns the size in bytes of the stored form of the loose object
+     *  with UID ID. */
+    long storedSize(ObjectId id) {
+        return fileFor(id).length();
+    }
+
+    /** Write the stored form of the loose object with UID ID to OUT. */
+    void copyStored(ObjectId id, OutputStream out) throws IOException {
+        Files.copy(fileFor(id).toPath(), out);
+    }
+
+    /** Returns CONTENTS in the stored form used by this store. */
+    byte[] encode(byte[] contents) {
+        return ObjectCodec.encode(contents, _level, _useDictionary);
+    }
+
+    /** Return the object with UID ID, casting it to EXPECTEDCLASS.
+     *  Throws IllegalArgumentException in case of problems. */
+    <T extends Serializable> T readObject(ObjectId id,
+                                          Class<T> expectedClass) {
+        return deserialize(read(id), expectedClass);
+    }
+
+    /** Store CONTENTS and return their UID.  Objects are immutable, so
+     *  nothing is written if the object is already present. */
+    ObjectId write(byte[] contents) {
+        Trace.Span span = _trace.span(Trace.OBJECT_WRITE);
+        Trace.Span hash = _trace.span(Trace.HASH);
+        _digest.reset();
+        _digest.update(contents);
+        ObjectId id = ObjectId.of(_digest);
+        hash.end(contents.length, 1);
+        _metrics.bytesHashed += contents.length;
+        int written = 0;
+        if (!contains(id)) {
+            File file = fileFor(id);
+            file.getParentFile().mkdirs();
+            writeContents(file, encode(contents));
+            written = 1;
+        }
+        span.end(contents.length, written);
+        _metrics.objectsWritten += written;
+        return id;
+    }
+
+    /** Add the object with UID ID to BATCH to be forced to disk, unless
+     *  it is packed (packs are forced when written). */
+    void sync(ObjectId id, WriteBatch batch) {
+        File file = fileFor(id);
+        if (file.isFile()) {
+            batch.sync(file);
+        }
+    }
+
+    /** Returns the UID that the contents of FILE would have as a blob,
+     *  without storing anything.  FILE is hashed in fixed-size blocks, so
+     *  memory use does not grow with its size. */
+    ObjectId blobId(File file) {
+        ObjectId result = blobId(file, _digest);
+        _metrics.bytesHashed += file.length();
+        return result;
+    }
+
+    /** Returns the UID that the contents of FILE would have as a blob,
+     *  computed with digest MD.  Unlike the other methods of a store, this
+     *  may be called from several threads at once, each with its own
+     *  MD. */
+    ObjectId blobId(File file, MessageDigest md) {
+        Trace.Span span = _trace.span(Trace.HASH);
+        long size = digestContents(file, md);
+        span.end(size, 1);
+        return ObjectId.of(md);
+    }
+
+    /** Store the contents of FILE as a blob and return its UID.  Unless
+     *  FILE is small, it is hashed and compressed while it is copied into
+     *  a temporary file in the store, and the copy is then renamed into
+     *  place, so FILE is read exactly once and never held in memory as a
+     *  whole. */
+    ObjectId writeBlob(File file) {
+        if (file.length() < ObjectCodec.DICTIONARY_THRESHOLD) {
+            return write(readContents(file));
+        }
+        _root.mkdirs();
+        Trace.Span span = _trace.span(Trace.OBJECT_WRITE);
+        File temp = null;
+        try {
+            temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null, _root);
+            _digest.reset();
+            try (InputStream in = new DigestInputStream(
+                     Files.newInputStream(file.toPath()), _digest);
+                 OutputStream out = ObjectCodec.encodingStream(
+                     Files.newOutputStream(temp.toPath()), _level)) {
+                in.transferTo(out);
+            }
+            ObjectId id = ObjectId.of(_digest);
+            int written = 0;
+            if (!contains(id)) {
+                File dest = fileFor(id);
+                dest.getParentFile().mkdirs();
+                Files.move(temp.toPath(), dest.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+                written = 1;
+            }
+            span.end(file.length(), written);
+            _metrics.bytesHashed += file.length();
+            _metrics.objectsWritten += written;
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Serialize OBJ, store the result and return its UID. */
+    ObjectId writeObject(Serializable obj) {
+        return write(serialize(obj));
+    }
+
+    /** Returns the UIDs of all objects in the store, in lexicographic
+     *  order. */
+    List<ObjectId> ids() {
+        TreeSet<ObjectId> result = new TreeSet<>(looseIds());
+        for (PackFile pack : packs()) {
+            result.addAll(pack.ids());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Returns the UIDs of all objects whose UID begins with PREFIX, in
+     *  lexicographic order.  Only the one fan-out directory that can
+     *  hold such objects is listed when PREFIX is long enough to name
+     *  it. */
+    List<ObjectId> idsWithPrefix(String prefix) {
+        if (prefix.length() < FANOUT_DIGITS
+            || !prefix.matches("[0-9a-f]*")) {
+            List<ObjectId> result = new ArrayList<>();
+            for (ObjectId id : ids()) {
+                if (id.toHex().startsWith(prefix)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+        TreeSet<ObjectId> result = new TreeSet<>();
+        for (PackFile pack : packs()) {
+            result.addAll(pack.idsWithPrefix(prefix));
+        }
+        List<ObjectId> loose = new ArrayList<>();
+        addIds(prefix.substring(0, FANOUT_DIGITS),
+               prefix.substring(FANOUT_DIGITS), loose);
+        result.addAll(loose);
+        return new ArrayList<>(result);
+    }
+
+    /** Move all loose objects into new packs, each no larger than
+     *  PackFile.MAX_PACK_SIZE, and delete the loose copies.  Blobs are
+     *  stored as deltas against the version of the same file in a parent
+     *  commit where possible.  Returns the number of objects packed. */
+    int pack() {
+        List<ObjectId> loose = new ArrayList<>();
+        for (ObjectId id : looseIds()) {
+            if (fileFor(id).length() <= PackFile.MAX_PACK_SIZE) {
+                loose.add(id);
+            }
+        }
+        Map<ObjectId, ObjectId> bases = deltaBases(loose);
+        List<ObjectId> batch = new ArrayList<>();
+        long size = 0;
+        for (ObjectId id : loose) {
+            long length = fileFor(id).length();
+            if (!batch.isEmpty() && size + length > PackFile.MAX_PACK_SIZE) {
+                writePack(batch, bases);
+                batch.clear();
+                size = 0;
+            }
+            batch.add(id);
+            size += length;
+        }
+        if (!batch.isEmpty()) {
+            writePack(batch, bases);
+        }
+        for (ObjectId id : loose) {
+            File file = fileFor(id);
+            file.delete();
+            file.getParentFile().delete();
+        }
+        return loose.size();
+    }
+
+    /** Returns a map from each blob among the objects IDS to a similar
+     *  blob among IDS to store it as a delta against: the contents of
+     *  the same file in a parent of a commit that tracks it.  Chains of
+     *  bases are cut at PackFile.MAX_DELTA_DEPTH. */
+    private Map<ObjectId, ObjectId> deltaBases(List<ObjectId> ids) {
+        Set<ObjectId> candidates = new HashSet<>(ids);
+        Map<ObjectId, ObjectId> bases = new HashMap<>();
+        for (ObjectId id : ids) {
+            Commit commit = Commit.loadIfCommit(this, id);
+            if (commit == null) {
+                continue;
+            }
+            for (ObjectId parent : commit.getParents()) {
+                if (!contains(parent)) {
+                    continue;
+                }
+                ObjectId parentTree = Commit.load(this, parent).getTree();
+                for (Tree.Change change
+                         : Tree.diff(this, parentTree, commit.getTree(),
+                                     null)) {
+                    if (change.getBefore() == null
+                        || change.getAfter() == null) {
+                        continue;
+                    }
+                    ObjectId baseId = change.getBefore();
+                    ObjectId blobId = change.getAfter();
+                    if (candidates.contains(baseId)
+                        && candidates.contains(blobId)) {
+                        bases.putIfAbsent(blobId, baseId);
+                    }
+                }
+            }
+        }
+        Map<ObjectId, Integer> depths = new HashMap<>();
+        for (ObjectId id : ids) {
+            deltaDepth(id, bases, depths);
+        }
+        return bases;
+    }
+
+    /** Records in DEPTHS the length of the chain of deltas ending at ID
+     *  according to BASES, and those of the chain's other members.
+     *  Removes from BASES any base that would make a chain longer than
+     *  PackFile.MAX_DELTA_DEPTH or close a cycle, so that the object is
+     *  stored whole instead. */
+    private void deltaDepth(ObjectId id, Map<ObjectId, ObjectId> bases,
+                            Map<ObjectId, Integer> depths) {
+        List<ObjectId> chain = new ArrayList<>();
+        Set<ObjectId> onChain = new HashSet<>();
+        ObjectId x = id;
+        while (x != null && !depths.containsKey(x) && onChain.add(x)) {
+            chain.add(x);
+            x = bases.get(x);
+        }
+        int depth = -1;
+        if (x != null && depths.containsKey(x)) {
+            depth = depths.get(x);
+        }
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            ObjectId member = chain.get(i);
+            depth += 1;
+            if (depth > PackFile.MAX_DELTA_DEPTH
+                || (depth == 0 && bases.containsKey(member))) {
+                bases.remove(member);
+                depth = 0;
+            }
+            depths.put(member, depth);
+        }
+    }
+
+    /** Write the loose objects IDS, in ascending order, to a new pack
+     *  using delta bases from BASES, and start reading from it. */
+    private void writePack(List<ObjectId> ids,
+                           Map<ObjectId, ObjectId> bases) {
+        Map<ObjectId, ObjectId> inPack = new HashMap<>();
+        Set<ObjectId> members = new HashSet<>(ids);
+        for (ObjectId id : ids) {
+            ObjectId base = bases.get(id);
+            if (base != null && members.contains(base)) {
+                inPack.put(id, base);
+            }
+        }
+        File index = PackFile.write(join(_root, PACK_DIR), ids, inPack, this);
+        packs().add(0, new PackFile(index, _metrics));
+    }
+
+    /** Returns the UIDs of all loose objects, in lexicographic order. */
+    private List<ObjectId> looseIds() {
+        List<ObjectId> result = new ArrayList<>();
+        List<String> dirs = directoryNamesIn(_root);
+        if (dirs == null) {
+            return result;
+        }
+        for (String dir : dirs) {
+            if (dir.length() == FANOUT_DIGITS) {
+                addIds(dir, "", result);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the packs of this store, opening them on first use. */
+    private List<PackFile> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<>();
+            File dir = join(_root, PACK_DIR);
+            List<String> names = plainFilenamesIn(dir);
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        _packs.add(new PackFile(join(dir, name), _metrics));
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Add to RESULT the UIDs of the objects in fan-out directory DIR
+     *  whose remaining digits begin with REST. */
+    private void addIds(String dir, String rest, List<ObjectId> result) {
+        List<String> names = plainFilenamesIn(join(_root, dir));
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.startsWith(rest) && ObjectId.isHex(dir + name)) {
+                result.add(ObjectId.fromHex(dir + name));
+            }
+        }
+    }
+
+    /** Returns the file that holds (or would hold) the object with
+     *  UID ID. */
+    private File fileFor(ObjectId id) {
+        String hex = id.toHex();
+        return join(_root, hex.substring(0, FANOUT_DIGITS),
+                    hex.substring(FANOUT_DIGITS));
+    }
+
+    /** The directory beneath which all fan-out directories live. */
+    private final File _root;
+    /** Deflater level at which new objects are compressed. */
+    private final int _level;
+    /** True iff small objects are compressed with the preset
+     *  dictionary. */
+    private final boolean _useDictionary;
+    /** Digest reused for every file this store hashes.  A store is used
+     *  by one thread at a time. */
+    private final MessageDigest _digest;
+    /** The packs of this store, most recently written first, or null
+     *  if they have not been opened yet. */
+    private List<PackFile> _packs;
+    /** The Metrics counting the work of this store. */
+    private final Metrics _metrics;
+    /** The Trace recording the work of this store. */
+    private final Trace _trace;
+}
@@ -0,0 +1,410 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** A pack: many objects concatenated into a single file, together with
+ *  an index that locates each of them by UID.
+ *
+ *  The pack file pack-NAME.pack holds a header (PACK_MAGIC, VERSION and
+ *  the object count) followed by one entry per object: a type byte, the
+ *  length of the data as an int, and the data itself.  The data of a
+ *  WHOLE entry are the object's contents in ObjectCodec's stored form.
+ *  Those of a DELTA entry are the binary UID of a base object in the same
+ *  pack followed by the stored form of a Delta that turns the base's
+ *  contents into the object's.  Bases may
+ *  themselves be deltas, up to MAX_DELTA_DEPTH deep.  Reconstructed
+ *  contents are kept in a small cache, so reading the same versions
+ *  again does not replay their chains.
+ *
+ *  The index file pack-NAME.idx holds a header (INDEX_MAGIC, VERSION), a
+ *  fan-out table of 256 ints whose entry B is the number of objects whose
+ *  UID's first byte is at most B, the 20-byte binary UIDs of all objects
+ *  in ascending order, and then the offset within the pack of each
+ *  object's entry as a long, in the same order.  The fan-out table
+ *  narrows a lookup to the objects sharing a first byte, and a binary
+ *  search over the memory-mapped UIDs finishes it, so finding an object
+ *  touches only a few pages of the index.
+ *
+ *  NAME is the SHA-1 of the sorted binary UIDs in the pack.  Both files are
+ *  forced to disk before either is renamed into place, and the index is
+ *  renamed after the pack, so a pack becomes visible only once it is
+ *  complete and durable, and the loose objects it replaces may then be
+ *  deleted.
+ */
+class PackFile {
+
+    /** Magic number at the start of a pack file ("GPAK"). */
+    static final int PACK_MAGIC = 0x4750414b;
+    /** Magic number at the start of an index file ("GIDX"). */
+    static final int INDEX_MAGIC = 0x47494458;
+    /** Version of the pack and index formats. */
+    static final int VERSION = 2;
+    /** Type byte of an entry holding an object's contents whole. */
+    static final byte WHOLE = 1;
+    /** Type byte of an entry holding a delta against a base object. */
+    static final byte DELTA = 2;
+    /** Longest chain of deltas written. */
+    static final int MAX_DELTA_DEPTH = 10;
+    /** Longest object stored as a delta, or used as the base of one;
+     *  longer objects are stored whole. */
+    static final int MAX_DELTA_SOURCE = 1 << 24;
+    /** Total size of the reconstructed contents cached per pack. */
+    static final int CACHE_BYTES = 1 << 25;
+    /** Largest pack written; packs are memory-mapped whole, so this must
+     *  stay below 2 GiB. */
+    static final long MAX_PACK_SIZE = 1L << 30;
+
+    /** Length of a binary UID in bytes. */
+    static final int ID_BYTES = UID_LENGTH / 2;
+    /** Number of entries in the fan-out table. */
+    static final int FANOUT_SIZE = 256;
+    /** Size of the index header in bytes. */
+    private static final int INDEX_HEADER = 2 * Integer.BYTES;
+    /** Size of an entry header (type byte and length). */
+    private static final int ENTRY_HEADER = 1 + Integer.BYTES;
+
+    /** Opens the pack whose index file is INDEX, mapping both the index
+     *  and the pack into memory.  Throws IllegalArgumentException if
+     *  either is missing or malformed. */
+    PackFile(File index, Metrics metrics) {
+        String name = index.getName();
+        _pack = new File(index.getParentFile(),
+                         name.substring(0, name.length() - ".idx".length())
+                         + ".pack");
+        _index = map(index);
+        _data = map(_pack);
+        if (_index.getInt(0) != INDEX_MAGIC || _index.getInt(4) != VERSION
+            || _data.getInt(0) != PACK_MAGIC || _data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("bad pack " + _pack);
+        }
+        _count = _index.getInt(fanoutPos(FANOUT_SIZE - 1));
+        _metrics = metrics;
+    }
+
+    /** Returns the number of objects in this pack. */
+    int size() {
+        return _count;
+    }
+
+    /** Returns true iff this pack holds the object with UID ID. */
+    boolean contains(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the contents of the object with UID ID, or null if this
+     *  pack does not hold it. */
+    byte[] read(ObjectId id) {
+        int k = find(id);
+        if (k < 0) {
+            return null;
+        }
+        return readAt(k);
+    }
+
+    /** Returns the first N bytes of the contents of the object with UID
+     *  ID, or all of them if there are fewer, or null if this pack does
+     *  not hold it.  A whole object is inflated only as far as needed. */
+    byte[] readPrefix(ObjectId id, int n) {
+        int k = find(id);
+        if (k < 0) {
+            return null;
+        }
+        int pos = (int) _index.getLong(offsetPos(k));
+        if (_data.get(pos) == WHOLE) {
+            return ObjectCodec.decodePrefix(
+                _data.slice(pos + ENTRY_HEADER, _data.getInt(pos + 1)), n);
+        }
+        byte[] contents = readAt(k);
+        return Arrays.copyOf(contents, Math.min(n, contents.length));
+    }
+
+    /** Write the contents of the object with UID ID to OUT and return
+     *  true, or return false if this pack does not hold it.  Whole
+     *  objects are copied or inflated from the pack file by
+     *  ObjectCodec.decodeTo; deltas are reconstructed in memory. */
+    boolean copyTo(ObjectId id, WritableByteChannel out)
+        throws IOException {
+        int k = find(id);
+        if (k < 0) {
+            return false;
+        }
+        int pos = (int) _index.getLong(offsetPos(k));
+        if (_data.get(pos) == WHOLE) {
+            try (FileChannel in = FileChannel.open(_pack.toPath())) {
+                ObjectCodec.decodeTo(in, pos + ENTRY_HEADER,
+                                     _data.getInt(pos + 1), out);
+            }
+        } else {
+            ByteBuffer contents = ByteBuffer.wrap(readAt(k));
+            while (contents.hasRemaining()) {
+                out.write(contents);
+            }
+        }
+        return true;
+    }
+
+    /** Returns the contents of the Kth object of the index. */
+    private byte[] readAt(int k) {
+        int pos = (int) _index.getLong(offsetPos(k));
+        byte type = _data.get(pos);
+        int len = _data.getInt(pos + 1);
+        if (type == WHOLE) {
+            byte[] stored = new byte[len];
+            _data.get(pos + ENTRY_HEADER, stored);
+            return ObjectCodec.decode(stored);
+        }
+        byte[] result = _cache.get(k);
+        if (result != null) {
+            _metrics.packCacheHits += 1;
+        } else {
+            _metrics.packCacheMisses += 1;
+            ObjectId baseId = ObjectId.get(_data, pos + ENTRY_HEADER);
+            byte[] delta = new byte[len - ID_BYTES];
+            _data.get(pos + ENTRY_HEADER + ID_BYTES, delta);
+            result = Delta.apply(readAt(find(baseId)),
+                                 ObjectCodec.decode(delta));
+            cache(k, result);
+        }
+        return result.clone();
+    }
+
+    /** Cache CONTENTS as the contents of the Kth object of the index,
+     *  then evict least recently used entries until the cache holds at
+     *  most CACHE_BYTES, or just CONTENTS if it alone is larger. */
+    private void cache(int k, byte[] contents) {
+        byte[] old = _cache.put(k, contents);
+        if (old != null) {
+            _cacheBytes -= old.length;
+        }
+        _cacheBytes += contents.length;
+        Iterator<byte[]> eldest = _cache.values().iterator();
+        while (_cacheBytes > CACHE_BYTES && _cache.size() > 1) {
+            _cacheBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /** Returns the UIDs of all objects in this pack, in ascending
+     *  order. */
+    List<ObjectId> ids() {
+        List<ObjectId> result = new ArrayList<>(_count);
+        for (int k = 0; k < _count; k += 1) {
+            result.add(idAt(k));
+        }
+        return result;
+    }
+
+    /** Returns the UIDs of all objects in this pack whose UID begins with
+     *  PREFIX (at least two hex digits), in ascending order. */
+    List<ObjectId> idsWithPrefix(String prefix) {
+        int b = Integer.parseInt(prefix.substring(0, 2), 16);
+        List<ObjectId> result = new ArrayList<>();
+        for (int k = lowerBound(b); k < upperBound(b); k += 1) {
+            ObjectId id = idAt(k);
+            if (id.toHex().startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the position within the index of the object with UID ID,
+     *  or -1 if it is absent. */
+    private int find(ObjectId id) {
+        int lo = lowerBound(id.firstByte());
+        int hi = upperBound(id.firstByte());
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = id.compareTo(_index, idPos(mid));
+            if (c == 0) {
+                return mid;
+            } else if (c > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the index of the first object whose first byte is B. */
+    private int lowerBound(int b) {
+        if (b == 0) {
+            return 0;
+        }
+        return _index.getInt(fanoutPos(b - 1));
+    }
+
+    /** Returns one more than the index of the last object whose first
+     *  byte is B. */
+    private int upperBound(int b) {
+        return _index.getInt(fanoutPos(b));
+    }
+
+    /** Returns the UID at position K of the index. */
+    private ObjectId idAt(int k) {
+        return ObjectId.get(_index, idPos(k));
+    }
+
+    /** Returns the position within the index of fan-out entry B. */
+    private static int fanoutPos(int b) {
+        return INDEX_HEADER + b * Integer.BYTES;
+    }
+
+    /** Returns the position within the index of the Kth UID. */
+    private static int idPos(int k) {
+        return fanoutPos(FANOUT_SIZE) + k * ID_BYTES;
+    }
+
+    /** Returns the position within the index of the Kth offset. */
+    private int offsetPos(int k) {
+        return idPos(_count) + k * Long.BYTES;
+    }
+
+    /** Writes the loose objects with UIDs IDS (in ascending order) from
+     *  STORE into a new pack in directory DIR and returns its index file.
+     *  An object that BASES maps to another of IDS is stored as a delta
+     *  against it when both are at most MAX_DELTA_SOURCE bytes long and
+     *  the delta is sufficiently smaller; BASES must form chains no
+     *  longer than MAX_DELTA_DEPTH.  Other objects are copied into the
+     *  pack in the stored form they already have, a buffer at a time, so
+     *  no object larger than MAX_DELTA_SOURCE is ever held in memory. */
+    static File write(File dir, List<ObjectId> ids,
+                      Map<ObjectId, ObjectId> bases, ObjectStore store) {
+        dir.mkdirs();
+        MessageDigest md = newSha1Digest();
+        for (ObjectId id : ids) {
+            md.update(id.toBytes());
+        }
+        String name = "pack-" + hexDigest(md);
+        File index = new File(dir, name + ".idx");
+        if (index.isFile()) {
+            return index;
+        }
+        File pack = new File(dir, name + ".pack");
+        long[] offsets = new long[ids.size()];
+        try {
+            File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null, dir);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(
+                         temp.toPath()), BUFFER_SIZE))) {
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(ids.size());
+                for (int k = 0; k < ids.size(); k += 1) {
+                    offsets[k] = out.size();
+                    writeEntry(out, ids.get(k), bases.get(ids.get(k)),
+                               store);
+                }
+            }
+            WriteBatch batch = new WriteBatch(store.metrics());
+            batch.add(temp, pack);
+            batch.add(writeIndex(dir, ids, offsets), index);
+            batch.commit();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return index;
+    }
+
+    /** Write on OUT the entry for the loose object with UID ID from
+     *  STORE, as a delta against the object with UID BASE if BASE is
+     *  non-null, neither object is longer than MAX_DELTA_SOURCE, and the
+     *  stored delta is less than half the size of the stored object. */
+    private static void writeEntry(DataOutputStream out, ObjectId id,
+                                   ObjectId base, ObjectStore store)
+        throws IOException {
+        long size = store.storedSize(id);
+        if (base != null) {
+            byte[] contents = store.readPrefix(id, MAX_DELTA_SOURCE + 1);
+            byte[] source = store.readPrefix(base, MAX_DELTA_SOURCE + 1);
+            if (contents.length <= MAX_DELTA_SOURCE
+                && source.length <= MAX_DELTA_SOURCE) {
+                byte[] delta = store.encode(Delta.create(source, contents));
+                if (2 * (delta.length + ID_BYTES) < size) {
+                    out.writeByte(DELTA);
+                    out.writeInt(ID_BYTES + delta.length);
+                    base.write(out);
+                    out.write(delta);
+                    return;
+                }
+            }
+        }
+        out.writeByte(WHOLE);
+        out.writeInt((int) size);
+        store.copyStored(id, out);
+    }
+
+    /** Writes to a temporary file in DIR, which it returns, the index of
+     *  a pack holding objects IDS, in ascending order, at OFFSETS. */
+    private static File writeIndex(File dir, List<ObjectId> ids,
+                                   long[] offsets) throws IOException {
+        File temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null, dir);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     temp.toPath()), BUFFER_SIZE))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            int[] fanout = new int[FANOUT_SIZE];
+            for (ObjectId id : ids) {
+                fanout[id.firstByte()] += 1;
+            }
+            int total = 0;
+            for (int b = 0; b < FANOUT_SIZE; b += 1) {
+                total += fanout[b];
+                out.writeInt(total);
+            }
+            for (ObjectId id : ids) {
+                id.write(out);
+            }
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+        return temp;
+    }
+
+    /** Returns FILE mapped read-only into memory. */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** The pack file. */
+    private final File _pack;
+    /** The index, mapped into memory. */
+    private final MappedByteBuffer _index;
+    /** The pack, mapped into memory. */
+    private final MappedByteBuffer _data;
+    /** Number of objects in the pack. */
+    private final int _count;
+    /** Total size of the contents in _cache. */
+    private long _cacheBytes;
+    /** The Metrics counting the work of this pack. */
+    private final Metrics _metrics;
+    /** Recently reconstructed delta entries, keyed by index position, in
+     *  order of last use. */
+    private final LinkedHashMap<Integer, byte[]> _cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+}
@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of writing and reading PackFiles. */
+public class PackFileTest {
+
+    /** Number of versions in the chain of deltas written. */
+    private static final int VERSIONS = PackFile.MAX_DELTA_DEPTH + 1;
+
+    /** Directory holding the store of each test. */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Make an empty store. */
+    @Before
+    public void setUp() throws IOException {
+        _root = tmp.newFolder("objects");
+        _store = new ObjectStore(_root);
+        _random = new Random(61);
+    }
+
+    /** Returns LINES random lines of text. */
+    private List<String> text(int lines) {
+        List<String> result = new ArrayList<>();
+        for (int k = 0; k < lines; k += 1) {
+            StringBuilder line = new StringBuilder();
+            for (int n = 20 + _random.nextInt(40); n > 0; n -= 1) {
+                line.append((char) ('a' + _random.nextInt(26)));
+            }
+            result.add(line.append('\n').toString());
+        }
+        return result;
+    }
+
+    /** Returns the bytes of LINES. */
+    private static byte[] bytes(List<String> lines) {
+        return String.join("", lines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Store in _store VERSIONS versions of a text, each made from the
+     *  one before by changing a few lines, returning their contents and
+     *  recording their UIDs in IDS and each one's predecessor as its base
+     *  in BASES. */
+    private List<byte[]> writeChain(List<ObjectId> ids,
+                                    Map<ObjectId, ObjectId> bases) {
+        List<String> lines = text(500);
+        List<byte[]> result = new ArrayList<>();
+        ObjectId previous = null;
+        for (int v = 0; v < VERSIONS; v += 1) {
+            for (int k = 0; k < 5; k += 1) {
+                lines.set(_random.nextInt(lines.size()), text(1).get(0));
+            }
+            lines.add(_random.nextInt(lines.size()), text(1).get(0));
+            byte[] contents = bytes(lines);
+            ObjectId id = _store.write(contents);
+            ids.add(id);
+            result.add(contents);
+            if (previous != null) {
+                bases.put(id, previous);
+            }
+            previous = id;
+        }
+        return result;
+    }
+
+    /** Returns the total size of the loose objects IDS in _store. */
+    private long storedSize(List<ObjectId> ids) {
+        long result = 0;
+        for (ObjectId id : ids) {
+            result += _store.storedSize(id);
+        }
+        return result;
+    }
+
+    @Test
+    public void roundTripsWholeObjects() {
+        List<ObjectId> ids = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        contents.add(new byte[0]);
+        contents.add("hello\n".getBytes(StandardCharsets.UTF_8));
+        contents.add(bytes(text(2000)));
+        byte[] noise = new byte[100000];
+        _random.nextBytes(noise);
+        contents.add(noise);
+        for (byte[] c : contents) {
+            ids.add(_store.write(c));
+        }
+        List<ObjectId> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        File index = PackFile.write(new File(_root, ObjectStore.PACK_DIR),
+                                    sorted, Map.of(), _store);
+        PackFile pack = new PackFile(index, new Metrics());
+        assertEquals(ids.size(), pack.size());
+        assertEquals(sorted, pack.ids());
+        for (int k = 0; k < ids.size(); k += 1) {
+            assertTrue(pack.contains(ids.get(k)));
+            assertArrayEquals(contents.get(k), pack.read(ids.get(k)));
+            int n = Math.min(10, contents.get(k).length);
+            assertArrayEquals(Arrays.copyOf(contents.get(k), n),
+                              pack.readPrefix(ids.get(k), 10));
+        }
+        ObjectId absent =
+            _store.write("absent".getBytes(StandardCharsets.UTF_8));
+        assertFalse(pack.contains(absent));
+        assertNull(pack.read(absent));
+        assertNull(pack.readPrefix(absent, 10));
+    }
+
+    @Test
+    public void roundTripsDeltaChains() {
+        List<ObjectId> ids = new ArrayList<>();
+        Map<ObjectId, ObjectId> bases = new HashMap<>();
+        List<byte[]> contents = writeChain(ids, bases);
+        List<byte[]> other = writeChain(ids, bases);
+        List<ObjectId> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        File index = PackFile.write(new File(_root, ObjectStore.PACK_DIR),
+                                    sorted, bases, _store);
+        File pack = new File(index.getParentFile(),
+                             index.getName().replace(".idx", ".pack"));
+        assertTrue("no deltas were written",
+                   2 * pack.length() < storedSize(ids));
+        contents.addAll(other);
+        for (int pass = 0; pass < 2; pass += 1) {
+            PackFile packFile = new PackFile(index, new Metrics());
+            for (int n = 0; n < ids.size(); n += 1) {
+                int k = n;
+                if (pass == 1) {
+                    k = ids.size() - 1 - n;
+                }
+                assertArrayEquals(contents.get(k), packFile.read(ids.get(k)));
+                assertArrayEquals(Arrays.copyOf(contents.get(k), 100),
+                                  packFile.readPrefix(ids.get(k), 100));
+            }
+        }
+    }
+
+    @Test
+    public void storeReadsPackedObjects() {
+        List<ObjectId> ids = new ArrayList<>();
+        Map<ObjectId, ObjectId> bases = new HashMap<>();
+        List<byte[]> contents = writeChain(ids, bases);
+        assertEquals(ids.size(), _store.pack());
+        ObjectStore store = new ObjectStore(_root);
+        List<ObjectId> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(sorted, store.ids());
+        for (int k = 0; k < ids.size(); k += 1) {
+            assertTrue(store.contains(ids.get(k)));
+            assertArrayEquals(contents.get(k), store.read(ids.get(k)));
+        }
+    }
+
+    /** Root of the store. */
+    private File _root;
+    /** The store written to. */
+    private ObjectStore _store;
+    /** Source of test data. */
+    private Random _random;
+}
@@ -1,29 +1,520 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
 import static gitlet.Utils.*;
 
-// TODO: any imports you need here
-
 /** Represents a gitlet repository.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
+ *  All persistent state lives beneath GITLET_DIR.  Blobs, trees and commits are
+ *  kept in a content-addressed ObjectStore under OBJECTS_DIR, which each
+ *  command opens once, with objects(), and passes to everything it
+ *  calls.  Every commit read or written by the commands goes through
+ *  readCommit and saveCommit so that the store's layout stays private
+ *  to it.  saveCommit
+ *  also records each new commit in the CommitGraph, which history walks
+ *  (isAncestor, splitPoint) use instead of loading commits and through
+ *  which resolveCommitId expands abbreviated UIDs, and in the
+ *  CommitManifest and MessageIndex, from which global-log and
+ *  find read commits without loading them.
  *
  *  @author TODO
  */
 public class Repository {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Repository class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided two examples for you.
-     */
 
     /** The current working directory. */
     public static final File CWD = new File(System.getProperty("user.dir"));
     /** The .gitlet directory. */
     public static final File GITLET_DIR = join(CWD, ".gitlet");
+    /** The directory holding all blobs, trees and commits. */
+    public static final File OBJECTS_DIR = join(GITLET_DIR, "objects");
+    /** The commit graph. */
+    public static final File COMMIT_GRAPH = join(GITLET_DIR, "commit-graph");
+    /** The commit manifest. */
+    public static final File MANIFEST = join(GITLET_DIR, "manifest");
+    /** The index of commit messages. */
+    public static final File MESSAGE_INDEX = join(GITLET_DIR, "messages");
+    /** The ref holding the UID of the current commit. */
+    public static final File HEAD = join(GITLET_DIR, "HEAD");
+    /** The staging area. */
+    public static final File INDEX = join(GITLET_DIR, "index");
+    /** The file locked by each command (see RepositoryLock). */
+    public static final File LOCK = join(GITLET_DIR, "lock");
+    /** The socket on which a Server for this repository listens. */
+    public static final File SERVER_SOCKET = join(GITLET_DIR, "server.sock");
+    /** The default log of command Metrics. */
+    public static final File METRICS_LOG = join(GITLET_DIR, "metrics.log");
+
+    /** Name of the environment variable giving the compression level
+     *  (0-9, where 0 stores objects uncompressed) of new objects. */
+    static final String COMPRESSION_VAR = "GITLET_COMPRESSION";
+
+    /** Name of the environment variable giving the number of threads used
+     *  to scan and hash the working tree (by default, one per
+     *  processor). */
+    static final String PARALLELISM_VAR = "GITLET_PARALLELISM";
+
+    /** Name of the environment variable giving how long, in
+     *  milliseconds, a command waits for commands in other processes to
+     *  release the repository before giving up. */
+    static final String LOCK_TIMEOUT_VAR = "GITLET_LOCK_TIMEOUT";
+
+    /** Name of the environment variable that, unless unset or 0, has
+     *  each command print a summary of its Trace on the standard error
+     *  (and keep the recording, if it names a file ending in .jfr). */
+    static final String TRACE_VAR = "GITLET_TRACE";
+
+    /** Name of the environment variable giving the file to which each
+     *  command appends its Metrics (METRICS_LOG by default), or 0 to log
+     *  none. */
+    static final String METRICS_VAR = "GITLET_METRICS";
+
+    /** Default lock timeout in milliseconds. */
+    static final long DEFAULT_LOCK_TIMEOUT = 10000;
+
+    /** Returns the lock to be held while running COMMAND: shared if
+     *  COMMAND only reads the repository and exclusive otherwise, or null
+     *  if there is no repository yet or COMMAND (init, serve) needs no
+     *  lock of its own. */
+    static RepositoryLock lock(String command) {
+        if (!GITLET_DIR.isDirectory()) {
+            return null;
+        }
+        long timeout = DEFAULT_LOCK_TIMEOUT;
+        String setting = System.getenv(LOCK_TIMEOUT_VAR);
+        if (setting != null && setting.matches("[0-9]{1,9}")) {
+            timeout = Long.parseLong(setting);
+        }
+        switch (command) {
+            case "init":
+            case "serve":
+                return null;
+            case "log":
+            case "global-log":
+            case "find":
+            case "status":
+            case "diff":
+                return RepositoryLock.acquire(LOCK, true, timeout);
+            default:
+                return RepositoryLock.acquire(LOCK, false, timeout);
+        }
+    }
+
+    /** Returns a scanner for the working tree with the configured number
+     *  of threads. */
+    static TreeScanner scanner() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        String setting = System.getenv(PARALLELISM_VAR);
+        if (setting != null && setting.matches("[1-9][0-9]{0,3}")) {
+            parallelism = Integer.parseInt(setting);
+        }
+        return new TreeScanner(parallelism);
+    }
+
+    /** Returns the object store of this repository, recording its work
+     *  in TRACE and counting it in METRICS.  A command makes one and
+     *  passes it to everything it calls, so that the packs it opens, and
+     *  the contents they cache, serve the whole command. */
+    static ObjectStore objects(Trace trace, Metrics metrics) {
+        int level = Deflater.DEFAULT_COMPRESSION;
+        String setting = System.getenv(COMPRESSION_VAR);
+        if (setting != null && setting.matches("[0-9]")) {
+            level = Integer.parseInt(setting);
+        }
+        return new ObjectStore(OBJECTS_DIR, level, true, trace, metrics);
+    }
+
+    /** Returns the staging area, counting its work in the Metrics of
+     *  STORE.  Callers save it with stagingArea.save(INDEX), which also
+     *  keeps the file hashes it has cached. */
+    static StagingArea stagingArea(ObjectStore store) {
+        return StagingArea.load(INDEX, store.metrics());
+    }
+
+    /** Returns the commit with UID ID in STORE. */
+    static Commit readCommit(ObjectStore store, ObjectId id) {
+        return Commit.load(store, id);
+    }
+
+    /** Store COMMIT, whose trees have been written to STORE with
+     *  Tree.write, add it to the commit graph and return its UID.  The
+     *  commit, with the trees and blobs it does not share with its first
+     *  parent, is forced to disk together before anything refers to the
+     *  commit, so a ref written afterwards with writeRef can never point
+     *  at a torn or missing object.  Only the directories that differ from the
+     *  first parent's are visited. */
+    static ObjectId saveCommit(ObjectStore store, Commit commit) {
+        ObjectId id = commit.save(store);
+        WriteBatch batch = new WriteBatch(scanner(), store.metrics());
+        store.sync(id, batch);
+        ObjectId base = null;
+        if (!commit.getParents().isEmpty()) {
+            base = Commit.load(store, commit.getParents().get(0)).getTree();
+        }
+        List<ObjectId> trees = new ArrayList<>();
+        for (Tree.Change change
+                 : Tree.diff(store, base, commit.getTree(), trees)) {
+            if (change.getAfter() != null) {
+                store.sync(change.getAfter(), batch);
+            }
+        }
+        for (ObjectId tree : trees) {
+            store.sync(tree, batch);
+        }
+        batch.commit();
+        CommitGraph.append(COMMIT_GRAPH, store, id, commit);
+        CommitGraph graph = commitGraph(store);
+        int offset = CommitManifest.append(MANIFEST, graph, store, id,
+                                           commit);
+        MessageIndex.append(MESSAGE_INDEX,
+                            CommitManifest.open(MANIFEST, graph, store),
+                            offset, store.metrics());
+        return id;
+    }
+
+    /** Make the working directory, which holds the files of the commit
+     *  with UID FROMID in STORE, hold those of the commit with UID TOID
+     *  instead, and clear the staging area, as checkout of a branch and
+     *  reset do.  Only files whose blobs differ between the two commits
+     *  are written or deleted.  Fails with an error message, changing
+     *  nothing, if an untracked file or directory is in the way of a file
+     *  that would be written. */
+    static void checkoutCommit(ObjectStore store, ObjectId fromId,
+                               ObjectId toId) {
+        Commit from = readCommit(store, fromId);
+        Commit to = readCommit(store, toId);
+        CheckoutPlan plan =
+            new CheckoutPlan(Tree.diff(store, from.getTree(), to.getTree(),
+                                       null));
+        StagingArea stage = stagingArea(store);
+        List<String> obstacles = plan.obstacles(CWD);
+        if (!obstacles.isEmpty()) {
+            TreeMap<String, ObjectId> tracked =
+                Tree.flatten(store, from.getTree());
+            if (!stage.untrackedFiles(obstacles, tracked).isEmpty()) {
+                throw error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+            }
+        }
+        plan.apply(CWD, store, stage);
+        stage.clear();
+        stage.save(INDEX);
+    }
+
+    /** Durably replace the contents of the ref (such as HEAD or a branch)
+     *  in file REF with the commit UID ID, counting the work in the
+     *  Metrics of STORE.  The new contents are forced to disk and then
+     *  renamed into place, so after a crash REF holds either its old or
+     *  its new value. */
+    static void writeRef(ObjectStore store, File ref, ObjectId id) {
+        WriteBatch batch = new WriteBatch(store.metrics());
+        batch.write(ref, id.toHex().getBytes(StandardCharsets.UTF_8));
+        batch.commit();
+    }
+
+    /** Returns the commit graph, building it from STORE if need be. */
+    static CommitGraph commitGraph(ObjectStore store) {
+        return CommitGraph.open(COMMIT_GRAPH, store);
+    }
+
+    /** Returns the commit manifest, building it from STORE if need be. */
+    static CommitManifest manifest(ObjectStore store) {
+        return CommitManifest.open(MANIFEST, commitGraph(store), store);
+    }
+
+    /** Returns the UID of the current commit. */
+    static ObjectId headCommitId() {
+        String id = null;
+        if (HEAD.isFile()) {
+            id = readContentsAsString(HEAD).trim();
+        }
+        if (id == null || !ObjectId.isHex(id)) {
+            throw error("No commit with that id exists.");
+        }
+        return ObjectId.fromHex(id);
+    }
+
+    /** Returns the full UID of the commit whose UID is or begins with
+     *  PREFIX among those in STORE.  Fails with an error message if there
+     *  is no such commit or more than one. */
+    static ObjectId resolveCommitId(ObjectStore store, String prefix) {
+        List<ObjectId> ids = commitGraph(store).withPrefix(prefix, 2);
+        if (ids.isEmpty()) {
+            throw error("No commit with that id exists.");
+        } else if (ids.size() > 1) {
+            throw error("Commit id %s is ambiguous.", prefix);
+        }
+        return ids.get(0);
+    }
+
+    /** Returns true iff the commit with UID ANCESTOR is the commit with
+     *  UID DESCENDANT or one of its ancestors, both being in STORE. */
+    static boolean isAncestor(ObjectStore store, ObjectId ancestor,
+                              ObjectId descendant) {
+        CommitGraph graph = commitGraph(store);
+        return graph.isAncestor(graph.rowOf(ancestor),
+                                graph.rowOf(descendant));
+    }
+
+    /** Returns the UID of the split point (latest common ancestor) of the
+     *  commits with UIDs CURRENT and GIVEN in STORE, or null if there is
+     *  none. */
+    static ObjectId splitPoint(ObjectStore store, ObjectId current,
+                               ObjectId given) {
+        CommitGraph graph = commitGraph(store);
+        int row = graph.splitPoint(graph.rowOf(given),
+                                   graph.rowOf(current), store.trace());
+        if (row == CommitGraph.NONE) {
+            return null;
+        }
+        return graph.idAt(row);
+    }
+
+    /** Fail with an error message unless the current directory is the
+     *  root of an initialized repository. */
+    static void checkInitialized() {
+        if (!GITLET_DIR.isDirectory()) {
+            throw error("Not in an initialized Gitlet directory.");
+        }
+    }
+
+    /** The log command on the commits in STORE, whose OPERANDS are
+     *  [-n N] [--skip N]: print the
+     *  log entries of the current commit and its first-parent ancestors,
+     *  newest first, omitting the first N given by --skip and stopping
+     *  after the N given by -n.  The chain is followed through the
+     *  CommitGraph one commit at a time, and only the commits printed
+     *  are loaded, so the first entries appear at once however long the
+     *  history, and the walk stops as soon as the output is closed (for
+     *  example, by head at the end of a pipe). */
+    static void log(ObjectStore store, String... operands) {
+        checkInitialized();
+        long limit = Long.MAX_VALUE;
+        long skip = 0;
+        for (int k = 0; k < operands.length; k += 2) {
+            if (k + 1 == operands.length
+                || !operands[k + 1].matches("[0-9]{1,18}")) {
+                throw error("Incorrect operands.");
+            } else if (operands[k].equals("-n")) {
+                limit = Long.parseLong(operands[k + 1]);
+            } else if (operands[k].equals("--skip")) {
+                skip = Long.parseLong(operands[k + 1]);
+            } else {
+                throw error("Incorrect operands.");
+            }
+        }
+        CommitGraph graph = commitGraph(store);
+        int row = graph.rowOf(headCommitId());
+        for (; skip > 0 && row != CommitGraph.NONE; skip -= 1) {
+            row = graph.parent1(row);
+        }
+        DateTimeFormatter format = logDateFormat();
+        try (Writer out = bufferedOutput(System.out)) {
+            for (; limit > 0 && row != CommitGraph.NONE; limit -= 1) {
+                ObjectId id = graph.idAt(row);
+                Commit commit = Commit.load(store, id);
+                List<String> parents = new ArrayList<>();
+                for (ObjectId parent : commit.getParents()) {
+                    parents.add(parent.toHex());
+                }
+                out.write(logEntry(id.toHex(), commit.getTimestamp(), parents,
+                                   commit.getMessage(), format));
+                row = graph.parent1(row);
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** The global-log command: print the log entries of all commits
+     *  ever made (in STORE), in the order they were made, stopping if the
+     *  output is closed. */
+    static void globalLog(ObjectStore store) {
+        checkInitialized();
+        CommitManifest manifest = manifest(store);
+        DateTimeFormatter format = logDateFormat();
+        try (Writer out = bufferedOutput(System.out)) {
+            for (int offset = manifest.first(); !manifest.atEnd(offset);
+                 offset = manifest.next(offset)) {
+                out.write(logEntry(manifest.id(offset),
+                                   manifest.timestamp(offset),
+                                   manifest.parents(offset),
+                                   manifest.message(offset), format));
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** The find command: print the UIDs of all commits in STORE whose
+     *  message is MESSAGE, in the order they were made. */
+    static void find(ObjectStore store, String message) {
+        checkInitialized();
+        CommitManifest manifest = manifest(store);
+        MessageIndex index = MessageIndex.open(MESSAGE_INDEX, manifest,
+                                               store.metrics());
+        boolean found = false;
+        for (int offset : index.candidates(message)) {
+            if (manifest.message(offset).equals(message)) {
+                System.out.println(manifest.id(offset));
+                found = true;
+            }
+        }
+        if (!found) {
+            throw error("Found no commit with that message.");
+        }
+    }
+
+    /** The diff command on the objects in STORE, whose OPERANDS are
+     *      [--histogram] [COMMIT [COMMIT]] [-- FILE]:
+     *  print a unified diff of the files changed from the first COMMIT
+     *  (by default, the current commit) to the second or, if there is no
+     *  second, to the working directory, or only of FILE if it is
+     *  given.  Lines are compared with Myers' algorithm, or with the
+     *  histogram algorithm if --histogram is given (see Diff).  Between
+     *  commits, only files in subtrees that differ are read; against
+     *  the working directory, only files whose stat data have changed
+     *  are hashed. */
+    static void diff(ObjectStore store, String... operands) {
+        checkInitialized();
+        boolean histogram = false;
+        List<ObjectId> commits = new ArrayList<>();
+        String path = null;
+        for (int k = 0; k < operands.length; k += 1) {
+            if (operands[k].equals("--histogram")) {
+                histogram = true;
+            } else if (operands[k].equals("--")
+                       && k == operands.length - 2) {
+                path = operands[k + 1];
+                break;
+            } else if (commits.size() < 2 && !operands[k].startsWith("-")) {
+                commits.add(resolveCommitId(store, operands[k]));
+            } else {
+                throw error("Incorrect operands.");
+            }
+        }
+        if (commits.isEmpty()) {
+            commits.add(headCommitId());
+        }
+        ObjectId before = readCommit(store, commits.get(0)).getTree();
+        if (commits.size() == 2) {
+            ObjectId after = readCommit(store, commits.get(1)).getTree();
+            for (Tree.Change change : Tree.diff(store, before, after, null)) {
+                if (path == null || path.equals(change.getPath())) {
+                    printFileDiff(change.getPath(),
+                                  readBlob(store, change.getBefore()),
+                                  readBlob(store, change.getAfter()),
+                                  histogram);
+                }
+            }
+            return;
+        }
+        TreeMap<String, ObjectId> tracked = Tree.flatten(store, before);
+        StagingArea stage = stagingArea(store);
+        TreeSet<String> names = new TreeSet<>(tracked.keySet());
+        names.addAll(stage.getAdded().keySet());
+        if (path != null) {
+            names.retainAll(List.of(path));
+        }
+        TreeMap<String, ObjectId> working =
+            stage.blobIds(CWD, new ArrayList<>(names), scanner(), store);
+        for (String name : names) {
+            if (!Objects.equals(tracked.get(name), working.get(name))) {
+                byte[] contents = null;
+                if (working.containsKey(name)) {
+                    contents = readContents(join(CWD, name));
+                }
+                printFileDiff(name, readBlob(store, tracked.get(name)),
+                              contents, histogram);
+            }
+        }
+        stage.save(INDEX);
+    }
+
+    /** Returns the contents of the blob with UID ID in STORE, or null if
+     *  ID is null. */
+    private static byte[] readBlob(ObjectStore store, ObjectId id) {
+        if (id == null) {
+            return null;
+        }
+        return store.read(id);
+    }
+
+    /** Print the diff of file PATH from contents BEFORE to contents
+     *  AFTER, either of which is null if the file does not exist, using
+     *  the histogram algorithm iff HISTOGRAM. */
+    private static void printFileDiff(String path, byte[] before,
+                                      byte[] after, boolean histogram) {
+        String from = "a/" + path;
+        String to = "b/" + path;
+        System.out.printf("diff --git %s %s%n", from, to);
+        if (before == null) {
+            before = new byte[0];
+            from = "/dev/null";
+        }
+        if (after == null) {
+            after = new byte[0];
+            to = "/dev/null";
+        }
+        if (Diff.isBinary(before) || Diff.isBinary(after)) {
+            System.out.printf("Binary files %s and %s differ%n", from, to);
+            return;
+        }
+        System.out.printf("--- %s%n+++ %s%n", from, to);
+        Diff diff = new Diff(Diff.lines(before), Diff.lines(after));
+        List<Diff.Edit> edits;
+        if (histogram) {
+            edits = diff.histogram();
+        } else {
+            edits = diff.myers();
+        }
+        diff.printUnified(edits, Diff.CONTEXT, System.out);
+    }
+
+    /** Returns the format of dates in log entries, in the default time
+     *  zone.  A command makes one and uses it for all its entries. */
+    static DateTimeFormatter logDateFormat() {
+        return DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z",
+                                           Locale.US)
+            .withZone(ZoneId.systemDefault());
+    }
+
+    /** Returns the log entry of the commit with UID ID, made at TIMESTAMP
+     *  with parents PARENTS and message MESSAGE, formatting its date with
+     *  FORMAT. */
+    static String logEntry(String id, Date timestamp, List<String> parents,
+                           String message, DateTimeFormatter format) {
+        StringBuilder entry = new StringBuilder();
+        entry.append("===\ncommit ").append(id).append('\n');
+        if (parents.size() > 1) {
+            entry.append("Merge: ").append(parents.get(0), 0, 7)
+                .append(' ').append(parents.get(1), 0, 7).append('\n');
+        }
+        entry.append("Date: ").append(format.format(timestamp.toInstant()))
+            .append('\n').append(message).append("\n\n");
+        return entry.toString();
+    }
 
-    /* TODO: fill in the rest of this class. */
+    /** The gc command: gather all loose objects of STORE into a pack, so
+     *  that reading them later costs a lookup in a memory-mapped index
+     *  rather than a file open each, and delete the temporary files left
+     *  in the repository by commands that crashed.  gc holds the
+     *  repository's lock exclusively, so no temporary file still in use
+     *  can be deleted. */
+    static void gc(ObjectStore store) {
+        checkInitialized();
+        WriteBatch.deleteTemporaryFiles(GITLET_DIR);
+        store.pack();
+    }
 }
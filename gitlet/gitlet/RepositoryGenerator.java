@@ -0,0 +1,375 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** A tool that creates a large synthetic Gitlet repository for testing
+ *  at scale.  Its main program may be invoked as follows:
+ *      java gitlet.RepositoryGenerator [--OPTION=VALUE]...
+ *  and creates a repository, with the head commit of its main branch
+ *  checked out, in the current directory, which must not already hold
+ *  one.  The options, with their defaults, are
+ *      --commits=10000      number of commits;
+ *      --files=1000         number of files in the initial commit;
+ *      --seed=1             seed of the random choices: the same options
+ *                           always give the same repository;
+ *      --branches=4         branching factor: the largest number of
+ *                           branches in progress at once;
+ *      --branch-rate=0.05   chance that a commit starts a new branch;
+ *      --merge-rate=0.03    chance that a commit merges a branch into
+ *                           another (ending the merged branch);
+ *      --churn=3            mean number of files changed per commit;
+ *      --size-median=4096   median file size in bytes;
+ *      --size-sigma=1.0     spread of file sizes: sizes are log-normally
+ *                           distributed, so about two thirds of them lie
+ *                           within a factor of e^SIGMA of the median.
+ *  Of the files a commit changes, ADD_FRACTION are new and
+ *  DELETE_FRACTION are deleted; the rest are modified.  A modification
+ *  replaces a window of EDIT_LINES lines of the file, so successive
+ *  versions of a file differ as little as they typically do in
+ *  practice, and pack can store them as deltas.  Files lie in a tree of
+ *  directories DIRECTORY_SIZE wide.
+ *
+ *  Objects are written with the same Commit, Tree and ObjectStore code
+ *  the commands use, but without forcing each commit to disk, and are
+ *  packed every PACK_INTERVAL commits.  The commit graph and the other
+ *  commit indexes are built once, at the end, rather than appended to
+ *  per commit.  The main branch's head is written to HEAD; the heads of
+ *  the other branches still in progress are printed.
+ */
+public class RepositoryGenerator {
+
+    /** Fraction of changed files that are new. */
+    static final double ADD_FRACTION = 0.1;
+    /** Fraction of changed files that are deleted. */
+    static final double DELETE_FRACTION = 0.05;
+    /** Number of lines replaced by a modification. */
+    static final int EDIT_LINES = 8;
+    /** Length of each line of a generated file, with its newline. */
+    static final int LINE_LENGTH = 48;
+    /** Number of files or subdirectories in a directory. */
+    static final int DIRECTORY_SIZE = 100;
+    /** Largest size of a generated file in bytes. */
+    static final int MAX_FILE_SIZE = 1 << 24;
+    /** Number of commits between packs of the loose objects. */
+    static final int PACK_INTERVAL = 10000;
+    /** Time of the first commit, in milliseconds since the epoch. */
+    static final long START_TIME = 1577836800000L;
+    /** Largest time between successive commits, in milliseconds. */
+    static final int MAX_INTERVAL = 3600000;
+    /** Name of the main branch. */
+    static final String MAIN = "main";
+
+    /** Create the repository described by the options ARGS. */
+    public static void main(String... args) {
+        try {
+            new RepositoryGenerator(args).generate();
+        } catch (GitletException excp) {
+            message(excp.getMessage());
+            System.exit(0);
+        }
+    }
+
+    /** A generator configured by the options ARGS. */
+    RepositoryGenerator(String... args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw error("Incorrect operands.");
+            }
+            String value = arg.substring(eq + 1);
+            try {
+                switch (arg.substring(2, eq)) {
+                    case "commits":
+                        _commits = Integer.parseInt(value);
+                        break;
+                    case "files":
+                        _files = Integer.parseInt(value);
+                        break;
+                    case "seed":
+                        _seed = Long.parseLong(value);
+                        break;
+                    case "branches":
+                        _maxBranches = Integer.parseInt(value);
+                        break;
+                    case "branch-rate":
+                        _branchRate = Double.parseDouble(value);
+                        break;
+                    case "merge-rate":
+                        _mergeRate = Double.parseDouble(value);
+                        break;
+                    case "churn":
+                        _churn = Integer.parseInt(value);
+                        break;
+                    case "size-median":
+                        _sizeMedian = Integer.parseInt(value);
+                        break;
+                    case "size-sigma":
+                        _sizeSigma = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw error("Incorrect operands.");
+                }
+            } catch (NumberFormatException excp) {
+                throw error("Incorrect operands.");
+            }
+        }
+        if (_commits < 1 || _files < 0 || _maxBranches < 1 || _churn < 1
+            || _sizeMedian < 0 || _sizeSigma < 0) {
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Create the repository in the current directory. */
+    void generate() {
+        if (Repository.GITLET_DIR.exists()) {
+            throw error("A Gitlet version-control system already exists "
+                        + "in the current directory.");
+        }
+        Repository.GITLET_DIR.mkdirs();
+        _store = Repository.objects(new Trace(), new Metrics());
+        _random = new Random(_seed);
+        long start = System.nanoTime();
+        TreeMap<String, ObjectId> initial = new TreeMap<>();
+        for (int k = 0; k < _files; k += 1) {
+            initial.put(path(newFile()), blob(k));
+        }
+        ObjectId tree = Tree.write(_store, null, initial);
+        Branch main = new Branch(MAIN, null, tree);
+        _branches.add(main);
+        commit(main, "initial commit", tree);
+        for (int n = 1; n < _commits; n += 1) {
+            step();
+            if (n % PACK_INTERVAL == 0) {
+                _store.pack();
+            }
+        }
+        _store.pack();
+        finish(main);
+        System.out.printf("%d commits (%d merges), %d files created, "
+                          + "%d branches in %.1f s%n", _commits, _merges,
+                          _versions.size(), _branchCount,
+                          (System.nanoTime() - start) / 1e9);
+        for (Branch branch : _branches) {
+            System.out.printf("%s %s%n", branch.name, branch.head);
+        }
+    }
+
+    /** Make one commit: a merge, the first commit of a new branch, or an
+     *  ordinary commit on an existing branch. */
+    private void step() {
+        Branch target = _branches.get(_random.nextInt(_branches.size()));
+        double choice = _random.nextDouble();
+        if (choice < _mergeRate && _branches.size() > 1) {
+            Branch given = _branches.get(1 + _random.nextInt(
+                                             _branches.size() - 1));
+            if (given == target) {
+                target = _branches.get(0);
+            }
+            merge(given, target);
+        } else if (choice < _mergeRate + _branchRate
+                   && _branches.size() < _maxBranches) {
+            _branchCount += 1;
+            Branch branch = new Branch("branch" + _branchCount,
+                                       target.head, target.tree);
+            _branches.add(branch);
+            change(branch);
+        } else {
+            change(target);
+        }
+    }
+
+    /** Commit a random change to BRANCH. */
+    private void change(Branch branch) {
+        TreeMap<String, ObjectId> changes = new TreeMap<>();
+        int count = 1 + _random.nextInt(2 * _churn - 1);
+        for (int k = 0; k < count; k += 1) {
+            double choice = _random.nextDouble();
+            int file;
+            if (choice < ADD_FRACTION || _versions.isEmpty()) {
+                file = newFile();
+            } else {
+                file = _random.nextInt(_versions.size());
+            }
+            if (choice >= ADD_FRACTION
+                && choice < ADD_FRACTION + DELETE_FRACTION) {
+                changes.put(path(file), null);
+            } else {
+                _versions.set(file, _versions.get(file) + 1);
+                changes.put(path(file), blob(file));
+            }
+        }
+        ObjectId tree = Tree.write(_store, branch.tree, changes);
+        commit(branch, "Change " + changes.size() + " files", tree);
+    }
+
+    /** Commit to TARGET the merge of branch GIVEN, which then ends: the
+     *  changes GIVEN made since it started are applied to TARGET, and
+     *  win where both changed a file. */
+    private void merge(Branch given, Branch target) {
+        TreeMap<String, ObjectId> changes = new TreeMap<>();
+        for (Tree.Change change
+                 : Tree.diff(_store, given.base, given.tree, null)) {
+            changes.put(change.getPath(), change.getAfter());
+        }
+        ObjectId tree = Tree.write(_store, target.tree, changes);
+        _merges += 1;
+        commit(target, String.format("Merged %s into %s.", given.name,
+                                     target.name),
+               tree, given.head);
+        _branches.remove(given);
+    }
+
+    /** Make a commit on BRANCH with message MESSAGE and tree TREE, whose
+     *  parents are BRANCH's head and then OTHERPARENTS. */
+    private void commit(Branch branch, String message, ObjectId tree,
+                        ObjectId... otherParents) {
+        List<ObjectId> parents = new ArrayList<>();
+        if (branch.head != null) {
+            parents.add(branch.head);
+        }
+        parents.addAll(List.of(otherParents));
+        _time += 1 + _random.nextInt(MAX_INTERVAL);
+        Commit commit = new Commit(message, new Date(_time), parents, tree);
+        ObjectId id = commit.save(_store);
+        _made.put(id, commit);
+        branch.head = id;
+        branch.tree = tree;
+    }
+
+    /** Write the commit indexes and HEAD, which names the head of MAIN,
+     *  and check out MAIN's files. */
+    private void finish(Branch main) {
+        CommitGraph.write(Repository.COMMIT_GRAPH, _made, _store.metrics());
+        _made.clear();
+        CommitGraph graph = Repository.commitGraph(_store);
+        CommitManifest.rebuild(Repository.MANIFEST, graph, _store);
+        MessageIndex.rebuild(Repository.MESSAGE_INDEX,
+                             Repository.manifest(_store), _store.metrics());
+        Repository.writeRef(_store, Repository.HEAD, main.head);
+        StagingArea stage = Repository.stagingArea(_store);
+        new CheckoutPlan(Tree.diff(_store, null, main.tree, null))
+            .apply(Repository.CWD, _store, stage);
+        stage.save(Repository.INDEX);
+    }
+
+    /** Returns the number of a new file, of which there are no versions
+     *  yet. */
+    private int newFile() {
+        _versions.add(0);
+        return _versions.size() - 1;
+    }
+
+    /** Returns the path of file number FILE. */
+    private static String path(int file) {
+        int square = DIRECTORY_SIZE * DIRECTORY_SIZE;
+        return String.format("src/d%d/d%d/file%d.txt", file / square,
+                             file / DIRECTORY_SIZE % DIRECTORY_SIZE, file);
+    }
+
+    /** Store the current version of file number FILE and return its
+     *  UID.  Every version of a file has the same size and lines, drawn
+     *  using the file's own seed, except for one window of EDIT_LINES
+     *  lines, placed and filled using the seed of the version. */
+    private ObjectId blob(int file) {
+        long fileSeed = _seed * 1000003L + file;
+        Random lines = new Random(fileSeed);
+        double size = _sizeMedian * Math.exp(_sizeSigma
+                                             * lines.nextGaussian());
+        byte[] contents = new byte[(int) Math.min(size, MAX_FILE_SIZE)];
+        fill(contents, 0, contents.length, lines);
+        int version = _versions.get(file);
+        if (version > 0 && contents.length > 0) {
+            Random edit = new Random(fileSeed * 31 + version);
+            int from = edit.nextInt(contents.length);
+            from -= from % LINE_LENGTH;
+            fill(contents, from,
+                 Math.min(contents.length, from + EDIT_LINES * LINE_LENGTH),
+                 edit);
+        }
+        return _store.write(contents);
+    }
+
+    /** Fill CONTENTS[FROM .. TO) with lines of random letters from
+     *  RANDOM, ending each LINE_LENGTH-byte line with a newline.  FROM
+     *  is the start of a line. */
+    private static void fill(byte[] contents, int from, int to,
+                             Random random) {
+        long bits = 0;
+        for (int k = from; k < to; k += 1) {
+            if (k % LINE_LENGTH == LINE_LENGTH - 1) {
+                contents[k] = '\n';
+                continue;
+            }
+            if (k % Long.BYTES == 0) {
+                bits = random.nextLong();
+            }
+            contents[k] = (byte) ('a' + (int) ((bits & 0xff) % 26));
+            bits >>>= Byte.SIZE;
+        }
+    }
+
+    /** A branch in progress. */
+    private static class Branch {
+        /** A branch named NAME whose head is the commit with UID HEAD
+         *  (null before the first commit) and tree TREE. */
+        Branch(String name, ObjectId head, ObjectId tree) {
+            this.name = name;
+            this.head = head;
+            this.tree = tree;
+            this.base = tree;
+        }
+
+        /** The name of the branch. */
+        private final String name;
+        /** The UID of the tree the branch started from. */
+        private final ObjectId base;
+        /** The UID of the head commit. */
+        private ObjectId head;
+        /** The UID of the head commit's tree. */
+        private ObjectId tree;
+    }
+
+    /** Number of commits to make. */
+    private int _commits = 10000;
+    /** Number of files in the initial commit. */
+    private int _files = 1000;
+    /** Seed of the random choices. */
+    private long _seed = 1;
+    /** Largest number of branches in progress at once. */
+    private int _maxBranches = 4;
+    /** Chance that a commit starts a branch. */
+    private double _branchRate = 0.05;
+    /** Chance that a commit is a merge. */
+    private double _mergeRate = 0.03;
+    /** Mean number of files changed per commit. */
+    private int _churn = 3;
+    /** Median file size. */
+    private int _sizeMedian = 4096;
+    /** Spread of the logarithms of file sizes. */
+    private double _sizeSigma = 1.0;
+
+    /** The object store written. */
+    private ObjectStore _store;
+    /** Source of all random choices. */
+    private Random _random;
+    /** Branches in progress, the main branch first. */
+    private final List<Branch> _branches = new ArrayList<>();
+    /** Number of branches started. */
+    private int _branchCount;
+    /** Number of merges made. */
+    private int _merges;
+    /** Number of the current version of each file, by file number. */
+    private final List<Integer> _versions = new ArrayList<>();
+    /** The commits made, in the order made. */
+    private final LinkedHashMap<ObjectId, Commit> _made =
+        new LinkedHashMap<>();
+    /** Time of the last commit. */
+    private long _time = START_TIME;
+}
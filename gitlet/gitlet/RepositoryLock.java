@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+import static gitlet.Utils.*;
+
+/** A lock on a repository held by one command, coordinating Gitlet
+ *  processes that share a working directory.  Commands that only read
+ *  the repository hold shared locks, so any number of them run at once;
+ *  commands that change it hold an exclusive lock, which waits for all
+ *  other commands to finish and keeps new ones out until it is closed.
+ *
+ *  The lock is an operating-system lock (FileChannel.lock) on a lock
+ *  file in the repository, so it is released even if its process dies.
+ *  Acquiring one polls with exponential backoff rather than blocking,
+ *  and fails with a Gitlet error if the lock cannot be had within a
+ *  given time.
+ */
+class RepositoryLock implements AutoCloseable {
+
+    /** First delay between attempts to acquire a lock, in milliseconds. */
+    static final long MIN_BACKOFF = 1;
+    /** Longest delay between attempts to acquire a lock, in
+     *  milliseconds. */
+    static final long MAX_BACKOFF = 100;
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** A lock LOCK held through CHANNEL. */
+    private RepositoryLock(FileChannel channel, FileLock lock) {
+        _channel = channel;
+        _lock = lock;
+    }
+
+    /** Returns a lock on lock file FILE, shared iff SHARED, waiting up to
+     *  TIMEOUT milliseconds for other processes to release conflicting
+     *  locks. */
+    static RepositoryLock acquire(File file, boolean shared, long timeout) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            long deadline = System.nanoTime() + timeout * NANOS_PER_MILLI;
+            long backoff = MIN_BACKOFF;
+            while (true) {
+                FileLock lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+                if (lock != null) {
+                    RepositoryLock result = new RepositoryLock(channel, lock);
+                    channel = null;
+                    return result;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    throw error("Another Gitlet command is using this "
+                                + "repository; try again later.");
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(2 * backoff, MAX_BACKOFF);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("Interrupted while waiting for the repository.");
+        } finally {
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /** Returns true iff this lock is shared. */
+    boolean isShared() {
+        return _lock.isShared();
+    }
+
+    /** Release this lock. */
+    @Override
+    public void close() {
+        try {
+            _lock.release();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            closeQuietly(_channel);
+        }
+    }
+
+    /** Close CHANNEL, ignoring errors. */
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** The open lock file. */
+    private final FileChannel _channel;
+    /** The lock held on it. */
+    private final FileLock _lock;
+}
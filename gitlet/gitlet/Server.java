@@ -0,0 +1,166 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static gitlet.Utils.*;
+
+/** The serve command: a long-running Gitlet process for one repository,
+ *  which runs the commands sent to it by Clients so that each command
+ *  costs no JVM start-up or class loading.
+ *
+ *  The server listens on the Unix domain socket Repository.SERVER_SOCKET
+ *  and handles one connection, and so one command, at a time.  A client
+ *  sends the number of arguments as an int followed by each argument as
+ *  modified UTF-8 (DataOutputStream.writeUTF).  The server runs them
+ *  through Main.run exactly as Main.main would, sending what the command
+ *  writes to System.out and System.err as frames (STDOUT or STDERR, then
+ *  an int length and that many bytes) and finally EXIT followed by the
+ *  int exit status the command would have produced: 0, even when the
+ *  command fails with a Gitlet error, or 1 if it died of an unexpected
+ *  exception or error (whose stack trace goes to the client's standard
+ *  error).  A connection closed before it sends a command (as by
+ *  Client.isServing) is ignored.
+ *
+ *  A command that fails in any way does not stop the server, with one
+ *  exception: after a VirtualMachineError other than StackOverflowError
+ *  (such as OutOfMemoryError), which may leave the JVM unfit to go on,
+ *  the server answers that command and then shuts down, removing its
+ *  socket, so that later clients run their commands themselves.
+ */
+class Server {
+
+    /** Frame kind ending a response, followed by the exit status. */
+    static final int EXIT = 0;
+    /** Frame kind carrying bytes written to standard output. */
+    static final int STDOUT = 1;
+    /** Frame kind carrying bytes written to standard error. */
+    static final int STDERR = 2;
+
+    /** Returns the address of the server socket, relative to the
+     *  repository root so that it stays within the length limit on socket
+     *  paths however deep the repository is. */
+    static UnixDomainSocketAddress address() {
+        return UnixDomainSocketAddress.of(
+            Repository.CWD.toPath().relativize(
+                Repository.SERVER_SOCKET.toPath()));
+    }
+
+    /** Serve commands for the repository in the current directory until
+     *  the process is killed or a command dies of a fatal error. */
+    static void serve() {
+        Repository.checkInitialized();
+        Path socket = Repository.SERVER_SOCKET.toPath();
+        if (Client.isServing()) {
+            throw error("A server is already running for this repository.");
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Files.deleteIfExists(socket);
+            server.bind(address());
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(() -> socket.toFile().delete()));
+            boolean serving = true;
+            while (serving) {
+                try (SocketChannel client = server.accept()) {
+                    serving = handle(client);
+                } catch (EOFException excp) {
+                    continue;
+                } catch (IOException excp) {
+                    System.err.println("gitlet serve: " + excp.getMessage());
+                }
+            }
+            Files.deleteIfExists(socket);
+            System.err.println("gitlet serve: stopped after a fatal error");
+        } catch (IOException excp) {
+            throw error("Cannot serve on %s: %s", socket, excp.getMessage());
+        }
+    }
+
+    /** Read one command from CLIENT, run it and send back its output and
+     *  exit status.  Returns false iff the command died of an error after
+     *  which the server should stop. */
+    private static boolean handle(SocketChannel client) throws IOException {
+        DataInputStream in =
+            new DataInputStream(Channels.newInputStream(client));
+        String[] args = new String[in.readInt()];
+        for (int k = 0; k < args.length; k += 1) {
+            args[k] = in.readUTF();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(client), BUFFER_SIZE));
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        int status = 0;
+        Throwable failure = null;
+        try {
+            System.setOut(new PrintStream(new FrameStream(out, STDOUT)));
+            System.setErr(new PrintStream(new FrameStream(out, STDERR)));
+            try {
+                Main.run(args);
+            } catch (GitletException excp) {
+                message(excp.getMessage());
+            } catch (Throwable excp) {
+                excp.printStackTrace();
+                status = 1;
+                failure = excp;
+            }
+            System.out.flush();
+            System.err.flush();
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        out.writeByte(EXIT);
+        out.writeInt(status);
+        out.flush();
+        return !(failure instanceof VirtualMachineError)
+            || failure instanceof StackOverflowError;
+    }
+
+    /** An OutputStream that sends whatever is written to it as frames of
+     *  a given kind. */
+    private static class FrameStream extends OutputStream {
+        /** A stream sending frames of kind KIND on OUT. */
+        FrameStream(DataOutputStream out, int kind) {
+            _out = out;
+            _kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                _out.writeByte(_kind);
+                _out.writeInt(len);
+                _out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        /** The stream carrying the frames. */
+        private final DataOutputStream _out;
+        /** The kind of the frames. */
+        private final int _kind;
+    }
+}
@@ -0,0 +1,404 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Utils.*;
+
+/** The staging area (index) of a repository: the files staged for
+ *  addition (with their blob UIDs) and for removal, together with a
+ *  cache of what was last learned about each working file.
+ *
+ *  For every file it has hashed, the staging area remembers the file's
+ *  size, modification time (to the nanosecond where the file system
+ *  records it), file key (inode) and blob UID.  A file whose stat data
+ *  are unchanged is taken to have the same contents, so status on a
+ *  clean tree stats each file instead of rehashing it.  As in Git, a
+ *  file modified no earlier than the staging area was last written is
+ *  "racily clean": it may have changed again within the same clock tick
+ *  without its stat data changing, so it is always rehashed.
+ *
+ *  The staging area is saved in a binary file: a header (MAGIC,
+ *  VERSION), then the staged additions (count, then name and blob UID
+ *  pairs), the staged removals (count, then names) and the cached stat
+ *  data (count, then name, size, modification time, file key and blob
+ *  UID for each file).  Blob UIDs are ObjectIds, saved in binary.
+ */
+class StagingArea {
+
+    /** Magic number at the start of a saved staging area ("GSTG"). */
+    static final int MAGIC = 0x47535447;
+    /** Version of the file format. */
+    static final int VERSION = 2;
+
+    /** An empty staging area, counting its work in METRICS. */
+    private StagingArea(Metrics metrics) {
+        _metrics = metrics;
+    }
+
+    /** Returns the staging area saved in FILE, or an empty one if FILE
+     *  does not exist, counting its work in METRICS. */
+    static StagingArea load(File file, Metrics metrics) {
+        StagingArea result = new StagingArea(metrics);
+        if (!file.isFile()) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(file.toPath()),
+                                         BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalArgumentException("bad index " + file);
+            }
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                result._added.put(in.readUTF(), ObjectId.read(in));
+            }
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                result._removed.add(in.readUTF());
+            }
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                String name = in.readUTF();
+                result._stats.put(name, new Stat(in.readLong(), in.readLong(),
+                                                 in.readUTF(),
+                                                 ObjectId.read(in)));
+            }
+            result._writtenAt = Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return result;
+    }
+
+    /** Save this staging area in FILE, if it has changed since it was
+     *  loaded.  It is written to a temporary file that then replaces
+     *  FILE, so a crash leaves either the old or the new staging area.
+     *  As in Git, cached stat data of files modified no earlier than the
+     *  new file are dropped (smudged): otherwise a file changed again
+     *  within that clock tick would look clean once a later save made
+     *  the staging area newer than it. */
+    void save(File file) {
+        if (!_changed) {
+            return;
+        }
+        _changed = false;
+        File temp = null;
+        try {
+            temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                       file.getAbsoluteFile().getParentFile());
+            writeTo(temp);
+            if (smudge(Files.getLastModifiedTime(temp.toPath())
+                       .to(TimeUnit.NANOSECONDS))) {
+                writeTo(temp);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Drop the cached stat data of files modified at or after WRITTENAT
+     *  (in nanoseconds), returning true iff there were any. */
+    private boolean smudge(long writtenAt) {
+        return _stats.values().removeIf(stat -> stat.mtime >= writtenAt);
+    }
+
+    /** Write this staging area to FILE. */
+    private void writeTo(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file.toPath()),
+                                          BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_added.size());
+            for (Map.Entry<String, ObjectId> e : _added.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+            out.writeInt(_removed.size());
+            for (String name : _removed) {
+                out.writeUTF(name);
+            }
+            out.writeInt(_stats.size());
+            for (Map.Entry<String, Stat> e : _stats.entrySet()) {
+                Stat stat = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(stat.size);
+                out.writeLong(stat.mtime);
+                out.writeUTF(stat.fileKey);
+                stat.blobId.write(out);
+            }
+        }
+    }
+
+    /** Returns the files staged for addition, mapped to their blob
+     *  UIDs. */
+    TreeMap<String, ObjectId> getAdded() {
+        return _added;
+    }
+
+    /** Returns the files staged for removal. */
+    TreeSet<String> getRemoved() {
+        return _removed;
+    }
+
+    /** Stage file NAME for addition with blob UID BLOBID. */
+    void add(String name, ObjectId blobId) {
+        _removed.remove(name);
+        _added.put(name, blobId);
+        _changed = true;
+    }
+
+    /** Stage file NAME for removal. */
+    void remove(String name) {
+        _added.remove(name);
+        _removed.add(name);
+        _changed = true;
+    }
+
+    /** Unstage file NAME. */
+    void unstage(String name) {
+        if (_added.remove(name) != null) {
+            _changed = true;
+        }
+        if (_removed.remove(name)) {
+            _changed = true;
+        }
+    }
+
+    /** Empty the staging area, as after a commit. */
+    void clear() {
+        _added.clear();
+        _removed.clear();
+        _changed = true;
+    }
+
+    /** Returns the blob UID of the contents of the file NAME in directory
+     *  DIR, or null if there is no such plain file.  The file is hashed
+     *  with STORE only if its stat data differ from those cached, or if
+     *  it is racily clean. */
+    ObjectId blobId(File dir, String name, ObjectStore store) {
+        Stat stat = stat(join(dir, name));
+        _metrics.filesStated += 1;
+        if (stat == null) {
+            return null;
+        }
+        ObjectId id = cachedId(name, stat);
+        if (id == null) {
+            id = store.blobId(join(dir, name));
+            remember(name, stat, id);
+        }
+        return id;
+    }
+
+    /** Record that the file NAME in directory DIR, just written, has
+     *  blob UID ID, so that it is not rehashed unless it changes. */
+    void record(File dir, String name, ObjectId id) {
+        Stat stat = stat(join(dir, name));
+        _metrics.filesStated += 1;
+        if (stat != null) {
+            remember(name, stat, id);
+        }
+    }
+
+    /** Returns the blob UIDs of the contents of the files NAMES in
+     *  directory DIR that are plain files, mapped from their names.
+     *  Files are stat'ed, and those that must be (re)hashed are hashed,
+     *  with STORE on the threads of SCANNER.  A file removed while this
+     *  runs is treated as removed. */
+    TreeMap<String, ObjectId> blobIds(File dir, List<String> names,
+                                      TreeScanner scanner,
+                                      ObjectStore store) {
+        Trace.Span span = store.trace().span(Trace.SCAN);
+        List<Stat> stats = scanner.map(names, name -> stat(join(dir, name)));
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        List<String> misses = new ArrayList<>();
+        List<Stat> missStats = new ArrayList<>();
+        for (int k = 0; k < names.size(); k += 1) {
+            Stat stat = stats.get(k);
+            if (stat == null) {
+                continue;
+            }
+            ObjectId id = cachedId(names.get(k), stat);
+            if (id == null) {
+                misses.add(names.get(k));
+                missStats.add(stat);
+            } else {
+                result.put(names.get(k), id);
+            }
+        }
+        List<ObjectId> ids =
+            scanner.map(misses, name -> blobId(store, join(dir, name),
+                                               scanner.digest()));
+        long hashed = 0;
+        for (int k = 0; k < misses.size(); k += 1) {
+            if (ids.get(k) == null) {
+                continue;
+            }
+            remember(misses.get(k), missStats.get(k), ids.get(k));
+            result.put(misses.get(k), ids.get(k));
+            hashed += missStats.get(k).size;
+        }
+        span.end(hashed, names.size());
+        _metrics.filesStated += names.size();
+        _metrics.bytesHashed += hashed;
+        return result;
+    }
+
+    /** Returns the blob UID of the contents of FILE, computed by STORE
+     *  with MD, or null if FILE was removed (or replaced by something
+     *  other than a plain file) after it was stat'ed. */
+    private static ObjectId blobId(ObjectStore store, File file,
+                                   MessageDigest md) {
+        try {
+            return store.blobId(file, md);
+        } catch (IllegalArgumentException excp) {
+            if (file.isFile()) {
+                throw excp;
+            }
+            return null;
+        }
+    }
+
+    /** Returns the stat data (with no blob UID) of FILE, or null if it is
+     *  not a plain file. */
+    private static Stat stat(File file) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(),
+                                         BasicFileAttributes.class);
+        } catch (IOException excp) {
+            return null;
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        return new Stat(attrs.size(),
+                        attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        String.valueOf(attrs.fileKey()), null);
+    }
+
+    /** Returns the cached blob UID of file NAME, whose current stat data
+     *  are STAT, or null if the file must be hashed. */
+    private ObjectId cachedId(String name, Stat stat) {
+        Stat cached = _stats.get(name);
+        if (cached != null && cached.size == stat.size
+            && cached.mtime == stat.mtime
+            && cached.fileKey.equals(stat.fileKey)
+            && stat.mtime < _writtenAt) {
+            _metrics.statCacheHits += 1;
+            return cached.blobId;
+        }
+        _metrics.statCacheMisses += 1;
+        return null;
+    }
+
+    /** Cache blob UID ID for file NAME with stat data STAT. */
+    private void remember(String name, Stat stat, ObjectId id) {
+        _stats.put(name, new Stat(stat.size, stat.mtime, stat.fileKey, id));
+        _changed = true;
+    }
+
+    /** Returns the "Modifications Not Staged For Commit" section of the
+     *  status of the working directory DIR, whose plain files are FILES,
+     *  against the files TRACKED (name -> blob UID) by the current
+     *  commit, hashing files as needed with STORE on the threads of
+     *  SCANNER: each such file name mapped to "modified" or "deleted". */
+    TreeMap<String, String> unstagedChanges(File dir, List<String> files,
+                                            Map<String, ObjectId> tracked,
+                                            TreeScanner scanner,
+                                            ObjectStore store) {
+        TreeMap<String, String> result = new TreeMap<>();
+        TreeSet<String> present = new TreeSet<>(files);
+        TreeMap<String, ObjectId> expected = new TreeMap<>(tracked);
+        expected.keySet().removeAll(_removed);
+        expected.putAll(_added);
+        List<String> candidates = new ArrayList<>();
+        for (String name : expected.keySet()) {
+            if (present.contains(name)) {
+                candidates.add(name);
+            } else {
+                result.put(name, "deleted");
+            }
+        }
+        TreeMap<String, ObjectId> actual =
+            blobIds(dir, candidates, scanner, store);
+        for (String name : candidates) {
+            if (!expected.get(name).equals(actual.get(name))) {
+                result.put(name, "modified");
+            }
+        }
+        return result;
+    }
+
+    /** Returns the "Untracked Files" section of the status of a working
+     *  directory whose plain files are FILES, against the files TRACKED
+     *  by the current commit. */
+    TreeSet<String> untrackedFiles(List<String> files,
+                                   Map<String, ObjectId> tracked) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String name : files) {
+            if ((!tracked.containsKey(name) || _removed.contains(name))
+                && !_added.containsKey(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** What was last learned about one working file. */
+    private static class Stat {
+        /** Stat data SIZE, MTIME and FILEKEY of a file whose contents have
+         *  blob UID BLOBID. */
+        Stat(long size, long mtime, String fileKey, ObjectId blobId) {
+            this.size = size;
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.blobId = blobId;
+        }
+
+        /** Size of the file in bytes. */
+        private final long size;
+        /** Modification time of the file in nanoseconds since the
+         *  epoch. */
+        private final long mtime;
+        /** The file's key (device and inode), as a String. */
+        private final String fileKey;
+        /** The blob UID of the file's contents. */
+        private final ObjectId blobId;
+    }
+
+    /** Files staged for addition, mapped to their blob UIDs. */
+    private final TreeMap<String, ObjectId> _added = new TreeMap<>();
+    /** Files staged for removal. */
+    private final TreeSet<String> _removed = new TreeSet<>();
+    /** Cached stat data of working files, by name. */
+    private final HashMap<String, Stat> _stats = new HashMap<>();
+    /** Modification time of the saved staging area when it was loaded, in
+     *  nanoseconds; files modified at or after it are racily clean. */
+    private long _writtenAt = Long.MIN_VALUE;
+    /** True iff this staging area differs from its saved copy. */
+    private boolean _changed;
+    /** The Metrics counting the work of this staging area. */
+    private final Metrics _metrics;
+}
@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/** Tests of the stat cache of StagingArea. */
+public class StagingAreaTest {
+
+    /** Directories holding the store and working tree of each test. */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Make an empty store and working directory. */
+    @Before
+    public void setUp() throws IOException {
+        _store = new ObjectStore(tmp.newFolder("objects"));
+        _dir = tmp.newFolder("work");
+        _index = new File(tmp.getRoot(), "index");
+    }
+
+    /** Returns the staging area saved in _index. */
+    private StagingArea load() {
+        return StagingArea.load(_index, new Metrics());
+    }
+
+    /** Returns the blob UID of CONTENTS. */
+    private ObjectId id(String contents) {
+        File file = new File(tmp.getRoot(), "expected");
+        Utils.writeContents(file, contents);
+        return _store.blobId(file);
+    }
+
+    @Test
+    public void cachesUnchangedFiles() {
+        File file = Utils.join(_dir, "f.txt");
+        Utils.writeContents(file, "one");
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        StagingArea stage = load();
+        assertEquals(id("one"), stage.blobId(_dir, "f.txt", _store));
+        stage.save(_index);
+        Metrics metrics = new Metrics();
+        stage = StagingArea.load(_index, metrics);
+        assertEquals(id("one"), stage.blobId(_dir, "f.txt", _store));
+        assertEquals(1, metrics.statCacheHits);
+    }
+
+    @Test
+    public void seesEditsInTheSameTick() throws IOException {
+        File file = Utils.join(_dir, "f.txt");
+        long tick = System.currentTimeMillis() + 10000;
+        Utils.writeContents(file, "one");
+        assertTrue(file.setLastModified(tick));
+        StagingArea stage = load();
+        assertEquals(id("one"), stage.blobId(_dir, "f.txt", _store));
+        Files.write(file.toPath(), "two".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(tick));
+        stage.save(_index);
+        stage = load();
+        stage.add("other.txt", id("other"));
+        stage.save(_index);
+        assertTrue(_index.setLastModified(tick + 2000));
+        stage = load();
+        assertEquals(id("two"), stage.blobId(_dir, "f.txt", _store));
+    }
+
+    /** The store hashing files. */
+    private ObjectStore _store;
+    /** The working directory. */
+    private File _dir;
+    /** The file holding the saved staging area. */
+    private File _index;
+}
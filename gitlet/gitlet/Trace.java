@@ -0,0 +1,343 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.AnnotationElement;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventFactory;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/** Timing spans for finding where a command spends its time.
+ *
+ *  Main starts a Trace for each command and passes it, in the command's
+ *  ObjectStore, to the code that does the work.  Each span is a JDK
+ *  Flight Recorder event, made by calling span, which starts it, and
+ *  ended by calling end, which records its byte and object counts and
+ *  commits it.  A Trace makes the types of these events with
+ *  EventFactory when it starts, rather than Gitlet declaring subclasses
+ *  of Event, and only when tracing is enabled; otherwise span returns a
+ *  Span that does nothing, so spans cost next to nothing and stay in
+ *  place permanently.  While a traced command runs, any recording, such
+ *  as one started with -XX:StartFlightRecording, also sees them as the
+ *  events gitlet.Command, gitlet.Scan and so on.
+ *
+ *  When the environment variable Repository.TRACE_VAR is set (to
+ *  anything but 0), the Trace makes its own recording of just these
+ *  events.  When the command finishes, the Trace reads the recording
+ *  back and prints a summary on the standard error: for each kind of
+ *  span, nested as the spans were, the number of spans and their total
+ *  time, bytes and objects.  A span begun on another thread (such as a
+ *  hash on one of a TreeScanner's threads) is nested in the innermost
+ *  span enclosing it in time on the thread running the command, so
+ *  times of nested spans are summed across threads and may exceed that
+ *  of their parent.  If the variable names a file ending in ".jfr", the
+ *  recording is also kept there for tools such as jfr and JDK Mission
+ *  Control.
+ */
+class Trace implements AutoCloseable {
+
+    /** Suffix of a TRACE_VAR setting naming a file for the recording. */
+    static final String JFR_SUFFIX = ".jfr";
+    /** Prefix of the names of the events of spans. */
+    static final String EVENT_PREFIX = "gitlet.";
+    /** Name of the event of a COMMAND span. */
+    static final String COMMAND_EVENT = "gitlet.Command";
+    /** Names of the events of each kind of span, without EVENT_PREFIX,
+     *  in order of kind. */
+    private static final String NAMES =
+        "Command Scan Hash ObjectRead ObjectWrite MergeBase";
+    /** Labels of the events of each kind of span, which name them in the
+     *  summary, in order of kind. */
+    private static final String LABELS =
+        "command scan hash object-read object-write merge-base";
+    /** Index of the field of each event holding its bytes. */
+    private static final int BYTES_FIELD = 0;
+    /** Index of the field of each event holding its objects. */
+    private static final int OBJECTS_FIELD = 1;
+    /** Index of the field of a COMMAND event holding its arguments. */
+    private static final int ARGS_FIELD = 2;
+    /** Separates the kinds of span in a path of nested spans. */
+    private static final String SEPARATOR = "/";
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /** Kind of span of a whole command. */
+    static final int COMMAND = 0;
+    /** Kind of span of a scan of working files, counting the files
+     *  stat'ed and the bytes of those hashed. */
+    static final int SCAN = 1;
+    /** Kind of span of the hashing of one file's contents. */
+    static final int HASH = 2;
+    /** Kind of span of the reading of one object from an ObjectStore,
+     *  counting its uncompressed size. */
+    static final int OBJECT_READ = 3;
+    /** Kind of span of the writing of one object to an ObjectStore,
+     *  counting its uncompressed size, and counting it as an object only
+     *  if it was not already present. */
+    static final int OBJECT_WRITE = 4;
+    /** Kind of span of a search of the commit graph for a merge base
+     *  (split point), counting the commits visited. */
+    static final int MERGE_BASE = 5;
+    /** Number of kinds of span. */
+    static final int KINDS = 6;
+
+    /** Returns a Trace of the command given by ARGS, running if tracing
+     *  is enabled and otherwise one that records nothing.  The server
+     *  command is never traced, since it does not finish; the commands it
+     *  runs are. */
+    static Trace start(String[] args) {
+        String setting = System.getenv(Repository.TRACE_VAR);
+        if (setting == null || setting.isEmpty() || setting.equals("0")
+            || args.length == 0 || args[0].equals("serve")) {
+            return new Trace();
+        }
+        Path output = null;
+        if (setting.endsWith(JFR_SUFFIX)) {
+            output = Path.of(setting);
+        }
+        return new Trace(String.join(" ", args), output);
+    }
+
+    /** A Trace that records nothing, for commands that are not traced
+     *  and for stores used outside of commands. */
+    Trace() {
+        _factories = null;
+        _recording = null;
+        _command = new Span(null);
+        _output = null;
+    }
+
+    /** A trace of the command COMMAND, keeping its recording in OUTPUT
+     *  if that is not null. */
+    private Trace(String command, Path output) {
+        _output = output;
+        _factories = new EventFactory[KINDS];
+        for (int kind = 0; kind < KINDS; kind += 1) {
+            _factories[kind] = eventFactory(kind);
+        }
+        _recording = new Recording();
+        _recording.setName("gitlet");
+        _recording.setToDisk(true);
+        for (int kind = 0; kind < KINDS; kind += 1) {
+            _recording.enable(EVENT_PREFIX + word(NAMES, kind))
+                .withThreshold(Duration.ZERO);
+        }
+        _recording.start();
+        _command = span(COMMAND);
+        _command.set(ARGS_FIELD, command);
+    }
+
+    /** Returns a new span of kind KIND (COMMAND, SCAN, ...), started
+     *  now.  May be called from any thread. */
+    Span span(int kind) {
+        if (_factories == null) {
+            return _command;
+        }
+        return new Span(_factories[kind].newEvent());
+    }
+
+    /** End the trace, printing its summary on the standard error.  A
+     *  trace that cannot be read back is reported there too, but never
+     *  makes the command fail. */
+    @Override
+    public void close() {
+        if (_recording == null) {
+            return;
+        }
+        _command.end(0, 0);
+        _recording.stop();
+        Path file = _output;
+        try {
+            if (file == null) {
+                file = Files.createTempFile("gitlet", JFR_SUFFIX);
+            }
+            _recording.dump(file);
+            summarize(RecordingFile.readAllEvents(file), System.err);
+        } catch (IOException excp) {
+            System.err.println("trace: " + excp.getMessage());
+        } finally {
+            _recording.close();
+            if (file != null && _output == null) {
+                file.toFile().delete();
+            }
+        }
+    }
+
+    /** Returns a factory of the events of spans of kind KIND. */
+    private static EventFactory eventFactory(int kind) {
+        List<AnnotationElement> annotations = List.of(
+            new AnnotationElement(Name.class,
+                                  EVENT_PREFIX + word(NAMES, kind)),
+            new AnnotationElement(Label.class, word(LABELS, kind)),
+            new AnnotationElement(Category.class,
+                                  new String[] {"Gitlet"}),
+            new AnnotationElement(StackTrace.class, false));
+        List<ValueDescriptor> fields = new ArrayList<>();
+        fields.add(new ValueDescriptor(
+            long.class, "bytes",
+            List.of(new AnnotationElement(Label.class, "Bytes"),
+                    new AnnotationElement(DataAmount.class,
+                                          DataAmount.BYTES))));
+        fields.add(new ValueDescriptor(
+            long.class, "objects",
+            List.of(new AnnotationElement(Label.class, "Objects"))));
+        if (kind == COMMAND) {
+            fields.add(new ValueDescriptor(
+                String.class, "args",
+                List.of(new AnnotationElement(Label.class, "Arguments"))));
+        }
+        return EventFactory.create(annotations, fields);
+    }
+
+    /** Returns word K of the space-separated WORDS. */
+    private static String word(String words, int k) {
+        return words.split(" ")[k];
+    }
+
+    /** Print on OUT a summary of the spans in EVENTS: one line for each
+     *  path of nested kinds of span, giving the number of spans and their
+     *  total time, objects and bytes, below the line of the path it
+     *  extends and otherwise in order of first appearance. */
+    static void summarize(List<RecordedEvent> events, PrintStream out) {
+        List<RecordedEvent> spans = new ArrayList<>(events);
+        spans.sort(Comparator.comparing(RecordedEvent::getStartTime)
+                   .thenComparing(RecordedEvent::getDuration,
+                                  Comparator.reverseOrder()));
+        long main = -1;
+        for (RecordedEvent span : spans) {
+            if (span.getEventType().getName().equals(COMMAND_EVENT)) {
+                main = threadOf(span);
+            }
+        }
+        Map<Long, Deque<RecordedEvent>> open = new HashMap<>();
+        Map<RecordedEvent, String> paths = new HashMap<>();
+        LinkedHashMap<String, long[]> totals = new LinkedHashMap<>();
+        for (RecordedEvent span : spans) {
+            Instant start = span.getStartTime();
+            for (Deque<RecordedEvent> stack : open.values()) {
+                while (!stack.isEmpty()
+                       && !stack.peek().getEndTime().isAfter(start)) {
+                    stack.pop();
+                }
+            }
+            Deque<RecordedEvent> stack =
+                open.computeIfAbsent(threadOf(span), t -> new ArrayDeque<>());
+            RecordedEvent parent = stack.peek();
+            if (parent == null && open.containsKey(main)) {
+                parent = open.get(main).peek();
+            }
+            String path = span.getEventType().getLabel();
+            if (parent != null) {
+                path = paths.get(parent) + SEPARATOR + path;
+            }
+            paths.put(span, path);
+            stack.push(span);
+            long[] total = totals.computeIfAbsent(path, p -> new long[4]);
+            total[0] += 1;
+            total[1] += span.getDuration().toNanos();
+            total[2] += span.getLong("objects");
+            total[3] += span.getLong("bytes");
+        }
+        out.printf("%-32s %8s %10s %10s %14s%n", "span", "count", "ms",
+                   "objects", "bytes");
+        print(out, totals, "");
+    }
+
+    /** Print on OUT the lines for the paths in TOTALS that extend PREFIX
+     *  by one kind of span, in order, each followed by the lines of the
+     *  paths extending it. */
+    private static void print(PrintStream out,
+                              LinkedHashMap<String, long[]> totals,
+                              String prefix) {
+        int depth = 0;
+        if (!prefix.isEmpty()) {
+            depth = prefix.split(SEPARATOR).length;
+        }
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            String path = entry.getKey();
+            if (!path.startsWith(prefix)
+                || path.indexOf(SEPARATOR, prefix.length()) >= 0) {
+                continue;
+            }
+            long[] total = entry.getValue();
+            out.printf("%-32s %8d %10.1f %10d %14d%n",
+                       "  ".repeat(depth) + path.substring(prefix.length()),
+                       total[0], total[1] / NANOS_PER_MILLI, total[2],
+                       total[3]);
+            print(out, totals, path + SEPARATOR);
+        }
+    }
+
+    /** Returns the Java id of the thread on which SPAN was recorded, or
+     *  -1 if it is unknown. */
+    private static long threadOf(RecordedEvent span) {
+        if (span.getThread() == null) {
+            return -1;
+        }
+        return span.getThread().getJavaThreadId();
+    }
+
+    /** A timed piece of work, started when made by Trace.span.  The
+     *  Span of a Trace that records nothing does nothing. */
+    static class Span {
+        /** A span recording EVENT, started now, or doing nothing if EVENT
+         *  is null. */
+        private Span(Event event) {
+            _event = event;
+            if (event != null) {
+                event.begin();
+            }
+        }
+
+        /** End this span, having dealt with BYTES bytes and OBJECTS
+         *  objects (files or commits, as the kind of span says). */
+        void end(long bytes, long objects) {
+            if (_event != null) {
+                _event.set(BYTES_FIELD, bytes);
+                _event.set(OBJECTS_FIELD, objects);
+                _event.commit();
+            }
+        }
+
+        /** Set field FIELD of this span's event to VALUE. */
+        private void set(int field, Object value) {
+            if (_event != null) {
+                _event.set(field, value);
+            }
+        }
+
+        /** The event recording this span, or null. */
+        private final Event _event;
+    }
+
+    /** Makes the events of each kind of span, or null if this Trace
+     *  records nothing. */
+    private final EventFactory[] _factories;
+    /** The recording made of the command, or null. */
+    private final Recording _recording;
+    /** The span of the command. */
+    private final Span _command;
+    /** Where to keep the recording, or null if it is not to be kept. */
+    private final Path _output;
+}
@@ -0,0 +1,373 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** A directory of a commit's files: a tree object, mapping each name in
+ *  the directory to a blob (for a file) or to another tree (for a
+ *  subdirectory).  Like blobs, trees are stored in the ObjectStore under
+ *  the UID of their contents, so a directory whose contents are the same
+ *  in two commits is one object shared by both, and a commit records
+ *  only the UID of its root tree.
+ *
+ *  Making a commit writes new trees only for the directories on the
+ *  paths that changed (see write), and two commits are compared by
+ *  walking their trees together and skipping every pair of subtrees
+ *  with equal UIDs (see diff), so both cost time proportional to the
+ *  number of changed paths times their depth.
+ *
+ *  A tree is encoded as MAGIC (int), VERSION (byte), the entry count
+ *  (int) and, for each entry in name order, its type (FILE or TREE), its
+ *  name (short byte count, then UTF-8 bytes) and its 20-byte UID.
+ *  Directories without files are not recorded.
+ */
+class Tree implements Dumpable {
+
+    /** Magic number at the start of an encoded Tree ("GTRE"). */
+    static final int MAGIC = 0x47545245;
+    /** Version of the encoding. */
+    static final int VERSION = 1;
+    /** Version of this class for Java serialization (see Dumpable). */
+    private static final long serialVersionUID = 1L;
+    /** Type of an entry for a file. */
+    static final int FILE = 1;
+    /** Type of an entry for a subdirectory. */
+    static final int TREE = 2;
+    /** Separator of the components of a path. */
+    static final char SEPARATOR = '/';
+
+    /** A tree with entries ENTRIES (name -> entry). */
+    Tree(TreeMap<String, Entry> entries) {
+        this.entries = new TreeMap<>(entries);
+    }
+
+    /** Returns the entries of this tree, by name. */
+    TreeMap<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /** Store this tree in STORE and return its UID. */
+    ObjectId save(ObjectStore store) {
+        return store.write(encode());
+    }
+
+    /** Returns the tree with UID ID in STORE, or an empty tree if ID is
+     *  null. */
+    static Tree load(ObjectStore store, ObjectId id) {
+        if (id == null) {
+            return new Tree(new TreeMap<>());
+        }
+        Tree result = parse(store.read(id));
+        if (result == null) {
+            throw new IllegalArgumentException("not a tree: " + id);
+        }
+        return result;
+    }
+
+    /** Returns the binary encoding of this Tree. */
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(e.getValue().type);
+                out.writeShort(name.length);
+                out.write(name);
+                e.getValue().id.write(out);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw error("Internal error serializing tree.");
+        }
+    }
+
+    /** Returns the Tree whose stored form is CONTENTS, or null if
+     *  CONTENTS is not an encoded Tree. */
+    static Tree parse(byte[] contents) {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(contents));
+        try {
+            if (contents.length < Integer.BYTES + 1 || in.readInt() != MAGIC
+                || in.readByte() != VERSION) {
+                return null;
+            }
+            TreeMap<String, Entry> entries = new TreeMap<>();
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                int type = in.readByte();
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                if (type != FILE && type != TREE) {
+                    return null;
+                }
+                entries.put(new String(name, StandardCharsets.UTF_8),
+                            new Entry(type, ObjectId.read(in)));
+            }
+            if (in.available() != 0) {
+                return null;
+            }
+            return new Tree(entries);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the UID of the root tree that results from applying
+     *  CHANGES to the tree with UID BASE (null for no files) in STORE,
+     *  writing any new trees to STORE.  CHANGES maps paths (relative,
+     *  with components separated by SEPARATOR) to the UIDs of the blobs
+     *  they are to hold, or to null for paths to be removed.  Only the
+     *  trees of directories that contain a changed path are read or
+     *  written. */
+    static ObjectId write(ObjectStore store, ObjectId base,
+                          Map<String, ObjectId> changes) {
+        return change(store, base, changes).save(store);
+    }
+
+    /** Returns the tree that results from applying CHANGES, as for
+     *  write, to the tree with UID BASE in STORE, writing any changed
+     *  subtrees to STORE. */
+    private static Tree change(ObjectStore store, ObjectId base,
+                               Map<String, ObjectId> changes) {
+        TreeMap<String, Entry> entries =
+            new TreeMap<>(load(store, base).entries);
+        TreeMap<String, Map<String, ObjectId>> nested = new TreeMap<>();
+        for (Map.Entry<String, ObjectId> e : changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf(SEPARATOR);
+            if (slash < 0) {
+                if (e.getValue() == null) {
+                    entries.remove(path);
+                } else {
+                    entries.put(path, new Entry(FILE, e.getValue()));
+                }
+            } else {
+                nested.computeIfAbsent(path.substring(0, slash),
+                                       k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), e.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, ObjectId>> e : nested.entrySet()) {
+            Entry old = entries.get(e.getKey());
+            ObjectId subBase = null;
+            if (old != null && old.type == TREE) {
+                subBase = old.id;
+            }
+            Tree sub = change(store, subBase, e.getValue());
+            if (sub.entries.isEmpty()) {
+                entries.remove(e.getKey());
+            } else {
+                entries.put(e.getKey(), new Entry(TREE, sub.save(store)));
+            }
+        }
+        return new Tree(entries);
+    }
+
+    /** Returns all files in the tree with UID ROOT (null for none) in
+     *  STORE, as a map from their paths to their blob UIDs. */
+    static TreeMap<String, ObjectId> flatten(ObjectStore store,
+                                             ObjectId root) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        addFiles(store, root, "", result);
+        return result;
+    }
+
+    /** Add to RESULT the files in the tree with UID ID in STORE, with
+     *  PREFIX prepended to their names. */
+    private static void addFiles(ObjectStore store, ObjectId id,
+                                 String prefix,
+                                 TreeMap<String, ObjectId> result) {
+        for (Map.Entry<String, Entry> e : load(store, id).entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.type == FILE) {
+                result.put(prefix + e.getKey(), entry.id);
+            } else {
+                addFiles(store, entry.id, prefix + e.getKey() + SEPARATOR,
+                         result);
+            }
+        }
+    }
+
+    /** Returns the differences between the files in the trees with UIDs
+     *  BEFORE and AFTER (either null for no files) in STORE, one per
+     *  path that is added, removed or changed.  Pairs of subtrees with
+     *  the same UID are skipped without being read.  If NEWTREES is not
+     *  null, the UIDs of the trees of AFTER that differ from those at
+     *  the same place in BEFORE, which are those a commit of AFTER may
+     *  have written, are added to it. */
+    static List<Change> diff(ObjectStore store, ObjectId before,
+                             ObjectId after, List<ObjectId> newTrees) {
+        List<Change> result = new ArrayList<>();
+        diff(store, before, after, "", newTrees, result);
+        return result;
+    }
+
+    /** Add to RESULT the differences between the trees with UIDs BEFORE
+     *  and AFTER, whose paths begin with PREFIX, collecting the UIDs of
+     *  changed trees of AFTER in NEWTREES if it is not null. */
+    private static void diff(ObjectStore store, ObjectId before,
+                             ObjectId after, String prefix,
+                             List<ObjectId> newTrees, List<Change> result) {
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        if (after != null && newTrees != null) {
+            newTrees.add(after);
+        }
+        Iterator<Map.Entry<String, Entry>> old =
+            load(store, before).entries.entrySet().iterator();
+        Iterator<Map.Entry<String, Entry>> now =
+            load(store, after).entries.entrySet().iterator();
+        Map.Entry<String, Entry> a = next(old);
+        Map.Entry<String, Entry> b = next(now);
+        while (a != null || b != null) {
+            int c;
+            if (a == null) {
+                c = 1;
+            } else if (b == null) {
+                c = -1;
+            } else {
+                c = a.getKey().compareTo(b.getKey());
+            }
+            if (c <= 0) {
+                String path = prefix + a.getKey();
+                Entry other = null;
+                if (c == 0) {
+                    other = b.getValue();
+                }
+                diffEntries(store, path, a.getValue(), other, newTrees,
+                            result);
+                a = next(old);
+            } else {
+                diffEntries(store, prefix + b.getKey(), null, b.getValue(),
+                            newTrees, result);
+            }
+            if (c >= 0) {
+                b = next(now);
+            }
+        }
+    }
+
+    /** Add to RESULT the differences between entries BEFORE and AFTER
+     *  (either possibly null) for PATH, collecting the UIDs of changed
+     *  trees in NEWTREES if it is not null. */
+    private static void diffEntries(ObjectStore store, String path,
+                                    Entry before, Entry after,
+                                    List<ObjectId> newTrees,
+                                    List<Change> result) {
+        if (before != null && after != null && before.type == after.type
+            && before.id.equals(after.id)) {
+            return;
+        }
+        ObjectId beforeFile = null;
+        ObjectId afterFile = null;
+        ObjectId beforeTree = null;
+        ObjectId afterTree = null;
+        if (before != null && before.type == FILE) {
+            beforeFile = before.id;
+        } else if (before != null) {
+            beforeTree = before.id;
+        }
+        if (after != null && after.type == FILE) {
+            afterFile = after.id;
+        } else if (after != null) {
+            afterTree = after.id;
+        }
+        if (beforeTree != null || afterTree != null) {
+            diff(store, beforeTree, afterTree, path + SEPARATOR, newTrees,
+                 result);
+        }
+        if (beforeFile != null || afterFile != null) {
+            result.add(new Change(path, beforeFile, afterFile));
+        }
+    }
+
+    /** Returns the next entry of ENTRIES, or null if there is none. */
+    private static Map.Entry<String, Entry> next(
+        Iterator<Map.Entry<String, Entry>> entries) {
+        if (entries.hasNext()) {
+            return entries.next();
+        }
+        return null;
+    }
+
+    @Override
+    public void dump() {
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String type = "blob";
+            if (e.getValue().type == TREE) {
+                type = "tree";
+            }
+            System.out.printf("%s %s %s%n", type, e.getValue().id,
+                              e.getKey());
+        }
+    }
+
+    /** One entry of a tree. */
+    static class Entry {
+        /** An entry of type TYPE (FILE or TREE) for the object with UID
+         *  ID. */
+        Entry(int type, ObjectId id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        /** FILE or TREE. */
+        private final int type;
+        /** The UID of the blob or tree. */
+        private final ObjectId id;
+    }
+
+    /** A difference between two trees at one path. */
+    static class Change {
+        /** A change to the file PATH from blob BEFORE to blob AFTER,
+         *  either of which is null if there is no such file. */
+        Change(String path, ObjectId before, ObjectId after) {
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        /** Returns the path of the file. */
+        String getPath() {
+            return path;
+        }
+
+        /** Returns the UID of the file's old blob, or null if the file
+         *  was added. */
+        ObjectId getBefore() {
+            return before;
+        }
+
+        /** Returns the UID of the file's new blob, or null if the file
+         *  was removed. */
+        ObjectId getAfter() {
+            return after;
+        }
+
+        /** The path of the file. */
+        private final String path;
+        /** The old blob, or null. */
+        private final ObjectId before;
+        /** The new blob, or null. */
+        private final ObjectId after;
+    }
+
+    /** The entries of this tree, by name. */
+    private TreeMap<String, Entry> entries;
+}
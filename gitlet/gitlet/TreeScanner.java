@@ -0,0 +1,103 @@
+package gitlet;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/** Runs per-file work on the working tree, such as stat calls and
+ *  hashing, on up to a given number of threads.  Results always come back
+ *  in the order of the file names given, so output built from them stays
+ *  deterministic however the work was scheduled.
+ *
+ *  The threads besides the caller's come from a ForkJoinPool of their
+ *  own, made for each call of map and shut down when it returns, so
+ *  that a parallelism above the size of the common pool is honored and
+ *  no threads outlive the work.  A command makes one scanner and maps
+ *  over the working tree once or twice, so the pool costs a few thread
+ *  starts per command, against the stat calls and hashing of at least
+ *  MIN_PARALLEL files.  Each thread gets its own digest from digest();
+ *  the digests cannot be kept in a static field, since Gitlet keeps no
+ *  static state beyond constants, so they last as long as the pool.
+ */
+class TreeScanner {
+
+    /** Fewest files worth handing to more than one thread. */
+    static final int MIN_PARALLEL = 64;
+
+    /** A scanner using up to PARALLELISM threads (at least 1). */
+    TreeScanner(int parallelism) {
+        _parallelism = Math.max(1, parallelism);
+    }
+
+    /** Returns the number of threads this scanner may use. */
+    int parallelism() {
+        return _parallelism;
+    }
+
+    /** Returns the results of applying FN to each of NAMES, in the same
+     *  order as NAMES.  FN may be called concurrently from several
+     *  threads: the calling thread and parallelism() - 1 tasks in a
+     *  ForkJoinPool of that many threads, which take the names one at a
+     *  time until none are left.  A RuntimeException thrown by any call
+     *  is rethrown. */
+    <T> List<T> map(List<String> names, Function<String, T> fn) {
+        Object[] results = new Object[names.size()];
+        if (_parallelism == 1 || names.size() < MIN_PARALLEL) {
+            for (int k = 0; k < results.length; k += 1) {
+                results[k] = fn.apply(names.get(k));
+            }
+        } else {
+            AtomicInteger next = new AtomicInteger();
+            AtomicReference<RuntimeException> failure =
+                new AtomicReference<>();
+            Runnable worker = () -> {
+                try {
+                    for (int k = next.getAndIncrement(); k < results.length;
+                         k = next.getAndIncrement()) {
+                        results[k] = fn.apply(names.get(k));
+                    }
+                } catch (RuntimeException excp) {
+                    failure.compareAndSet(null, excp);
+                    next.set(results.length);
+                }
+            };
+            ForkJoinPool pool = new ForkJoinPool(_parallelism - 1);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (int k = 1; k < _parallelism; k += 1) {
+                    tasks.add(pool.submit(worker));
+                }
+                worker.run();
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            } finally {
+                pool.shutdown();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) new ArrayList<>(Arrays.asList(results));
+        return result;
+    }
+
+    /** Returns a SHA-1 digest belonging to the calling thread, for use
+     *  inside functions passed to map. */
+    MessageDigest digest() {
+        return _digests.get();
+    }
+
+    /** Maximum number of threads used. */
+    private final int _parallelism;
+    /** One reusable digest per thread. */
+    private final ThreadLocal<MessageDigest> _digests =
+        ThreadLocal.withInitial(Utils::newSha1Digest);
+}
@@ -1,21 +1,32 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Formatter;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -31,32 +42,99 @@ class Utils {
     /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
     static final int UID_LENGTH = 40;
 
+    /** Size in bytes of the buffers used to stream file contents. */
+    static final int BUFFER_SIZE = 1 << 16;
+
     /* SHA-1 HASH VALUES. */
 
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+        MessageDigest md = newSha1Digest();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+        }
+        return hexDigest(md);
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, which must be a
+     *  normal file.  The file is read in blocks of BUFFER_SIZE bytes, so
+     *  memory use does not depend on its size.  MD is reset and used for
+     *  the computation, which lets a caller that hashes many files reuse
+     *  one digest (one per thread, since digests are not thread-safe).
+     *  Throws IllegalArgumentException in case of problems. */
+    static String sha1(File file, MessageDigest md) {
+        digestContents(file, md);
+        return hexDigest(md);
+    }
+
+    /** Reset MD and feed it the contents of FILE, which must be a normal
+     *  file, in blocks of BUFFER_SIZE bytes, leaving the caller to
+     *  complete the digest, and return the number of bytes fed.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static long digestContents(File file, MessageDigest md) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        md.reset();
+        long result = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                result += buffer.remaining();
+                md.update(buffer);
+                buffer.clear();
             }
-            return result.toString();
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, read in blocks as
+     *  for sha1(File, MessageDigest). */
+    static String sha1(File file) {
+        return sha1(file, newSha1Digest());
+    }
+
+    /** Returns the SHA-1 hash of the remaining contents of IN, read in
+     *  blocks of BUFFER_SIZE bytes using digest MD (which is reset first).
+     *  IN is not closed.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static String sha1(InputStream in, MessageDigest md) {
+        md.reset();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                md.update(buffer, 0, n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+        return hexDigest(md);
+    }
+
+    /** Returns a fresh SHA-1 MessageDigest. */
+    static MessageDigest newSha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Completes MD and returns its digest as a hexadecimal numeral. */
+    static String hexDigest(MessageDigest md) {
+        return ObjectId.of(md).toHex();
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
@@ -113,16 +191,21 @@ class Utils {
 
     /** Write the result of concatenating the bytes in CONTENTS to FILE,
      *  creating or overwriting it as needed.  Each object in CONTENTS may be
-     *  either a String or a byte array.  Throws IllegalArgumentException
-     *  in case of problems. */
+     *  either a String or a byte array.  The contents go to a temporary
+     *  file that is then renamed over FILE, so FILE is never seen
+     *  half-written; they are not forced to disk (see WriteBatch).
+     *  Throws IllegalArgumentException in case of problems. */
     static void writeContents(File file, Object... contents) {
+        File temp = null;
         try {
             if (file.isDirectory()) {
                 throw
                     new IllegalArgumentException("cannot overwrite directory");
             }
+            temp = File.createTempFile(WriteBatch.TEMP_PREFIX, null,
+                                       file.getAbsoluteFile().getParentFile());
             BufferedOutputStream str =
-                new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+                new BufferedOutputStream(Files.newOutputStream(temp.toPath()));
             for (Object obj : contents) {
                 if (obj instanceof byte[]) {
                     str.write((byte[]) obj);
@@ -131,8 +214,15 @@ class Utils {
                 }
             }
             str.close();
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
         }
     }
 
@@ -152,6 +242,23 @@ class Utils {
         }
     }
 
+    /** Return an object of type T deserialized from BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
         writeContents(file, serialize(obj));
@@ -188,6 +295,59 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Filter out all but directories. */
+    private static final FilenameFilter DIRECTORIES =
+        new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return new File(dir, name).isDirectory();
+            }
+        };
+
+    /** Returns a list of the names of all subdirectories of the directory
+     *  DIR, in lexicographic order as Java Strings.  Returns null if DIR
+     *  does not denote a directory. */
+    static List<String> directoryNamesIn(File dir) {
+        String[] files = dir.list(DIRECTORIES);
+        if (files == null) {
+            return null;
+        } else {
+            Arrays.sort(files);
+            return Arrays.asList(files);
+        }
+    }
+
+    /** Returns a list of the paths, relative to the directory DIR and
+     *  with components separated by '/', of all plain files in DIR and
+     *  its subdirectories other than those named EXCLUDED (such as
+     *  ".gitlet"), in lexicographic order as Java Strings.  Returns null
+     *  if DIR does not denote a directory. */
+    static List<String> plainFilenamesUnder(File dir, String excluded) {
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        addPlainFilenames(dir, "", excluded, result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Add to RESULT the paths of the plain files in and under DIR, other
+     *  than in directories named EXCLUDED, with PREFIX prepended. */
+    private static void addPlainFilenames(File dir, String prefix,
+                                          String excluded,
+                                          List<String> result) {
+        for (String name : plainFilenamesIn(dir)) {
+            result.add(prefix + name);
+        }
+        for (String name : directoryNamesIn(dir)) {
+            if (!name.equals(excluded)) {
+                addPlainFilenames(new File(dir, name), prefix + name + "/",
+                                  excluded, result);
+            }
+        }
+    }
+
     /* OTHER FILE UTILITIES */
 
     /** Return the concatentation of FIRST and OTHERS into a File designator,
@@ -236,4 +396,37 @@ class Utils {
         System.out.printf(msg, args);
         System.out.println();
     }
+
+    /** Returns a Writer sending UTF-8 text to OUT (normally System.out)
+     *  through one buffer of BUFFER_SIZE bytes.  Unlike OUT itself,
+     *  which as a PrintStream silently ignores errors, the Writer throws
+     *  IOException once OUT has failed, as it does when the reader of a
+     *  pipe has exited, so that a command can stop producing output no
+     *  one will read. */
+    static Writer bufferedOutput(PrintStream out) {
+        OutputStream checked = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                if (out.checkError()) {
+                    throw new IOException("output closed");
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (out.checkError()) {
+                    throw new IOException("output closed");
+                }
+            }
+        };
+        return new BufferedWriter(
+            new OutputStreamWriter(checked, StandardCharsets.UTF_8),
+            BUFFER_SIZE);
+    }
 }
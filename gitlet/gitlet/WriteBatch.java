@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** A group of file writes made durable together.
+ *
+ *  Each file written through a batch first goes to a temporary file in
+ *  the same directory, so no reader ever sees it half-written.  Files
+ *  already in place (such as objects written earlier without being
+ *  synced) may be added to the batch as well.  commit then performs one
+ *  barrier for the whole group: it forces every file to disk (on the
+ *  threads of a TreeScanner, so that the file system can overlap the
+ *  flushes), renames the new files into place, and forces each
+ *  directory involved once so that the renames themselves survive a
+ *  crash.  A later batch, such as the one moving a ref, therefore never
+ *  becomes durable before the objects it depends on.
+ */
+class WriteBatch {
+
+    /** Prefix of the names of temporary files. */
+    static final String TEMP_PREFIX = ".gitlet_tmp";
+
+    /** A batch syncing files on the threads of SCANNER, counting them
+     *  in METRICS. */
+    WriteBatch(TreeScanner scanner, Metrics metrics) {
+        _scanner = scanner;
+        _metrics = metrics;
+    }
+
+    /** A batch syncing files on a single thread, counting them in
+     *  METRICS. */
+    WriteBatch(Metrics metrics) {
+        this(new TreeScanner(1), metrics);
+    }
+
+    /** Arrange for FILE to be replaced with CONTENTS when this batch is
+     *  committed.  The contents are written to a temporary file now. */
+    void write(File file, byte[] contents) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        try {
+            File temp = File.createTempFile(TEMP_PREFIX, null, dir);
+            Files.write(temp.toPath(), contents);
+            add(temp, file);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Arrange for the finished temporary file TEMP to replace FILE when
+     *  this batch is committed.  TEMP must be in the same directory as
+     *  FILE. */
+    void add(File temp, File file) {
+        File old = _renames.put(file.getAbsoluteFile(), temp);
+        if (old != null) {
+            old.delete();
+        }
+    }
+
+    /** Arrange for FILE, which is already in place, to be forced to disk
+     *  when this batch is committed. */
+    void sync(File file) {
+        _syncs.add(file.getAbsoluteFile());
+    }
+
+    /** Returns true iff this batch has nothing to do. */
+    boolean isEmpty() {
+        return _renames.isEmpty() && _syncs.isEmpty();
+    }
+
+    /** Make all writes in this batch durable, as described above, and
+     *  empty it. */
+    void commit() {
+        List<String> files = new ArrayList<>();
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, File> e : _renames.entrySet()) {
+            files.add(e.getValue().getPath());
+            dirs.add(e.getKey().getParentFile());
+        }
+        for (File file : _syncs) {
+            files.add(file.getPath());
+            dirs.add(file.getParentFile());
+        }
+        _scanner.map(files, name -> force(new File(name), false));
+        try {
+            for (Map.Entry<File, File> e : _renames.entrySet()) {
+                Files.move(e.getValue().toPath(), e.getKey().toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException excp) {
+            abort();
+            throw new IllegalArgumentException(excp);
+        }
+        List<String> dirNames = new ArrayList<>();
+        for (File dir : dirs) {
+            dirNames.add(dir.getPath());
+        }
+        _scanner.map(dirNames, name -> force(new File(name), true));
+        _metrics.fsyncs += files.size() + dirNames.size();
+        _renames.clear();
+        _syncs.clear();
+    }
+
+    /** Discard the writes in this batch, deleting their temporary
+     *  files. */
+    void abort() {
+        for (File temp : _renames.values()) {
+            temp.delete();
+        }
+        _renames.clear();
+        _syncs.clear();
+    }
+
+    /** Delete the temporary files (those whose names begin with
+     *  TEMP_PREFIX) in DIR and its subdirectories, as left by writes that
+     *  a crash cut short, and return their number.  This must only be
+     *  done while nothing else may be writing to DIR, as under an
+     *  exclusive RepositoryLock. */
+    static int deleteTemporaryFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int result = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                result += deleteTemporaryFiles(file);
+            } else if (file.getName().startsWith(TEMP_PREFIX)
+                       && file.delete()) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Force FILE, a directory iff ISDIR, to disk.  Returns null (for
+     *  TreeScanner.map).  Directories cannot be opened for syncing on
+     *  some platforms; there, renames are left to the file system. */
+    private static Void force(File file, boolean isDir) {
+        try (FileChannel channel = FileChannel.open(
+                 file.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!isDir) {
+                throw new IllegalArgumentException(excp);
+            }
+        }
+        return null;
+    }
+
+    /** Scanner on whose threads files are forced. */
+    private final TreeScanner _scanner;
+    /** The Metrics counting the work of this batch. */
+    private final Metrics _metrics;
+    /** Files to be replaced, mapped to the temporary files replacing
+     *  them, in the order added. */
+    private final LinkedHashMap<File, File> _renames = new LinkedHashMap<>();
+    /** Files in place to be forced. */
+    private final LinkedHashSet<File> _syncs = new LinkedHashSet<>();
+}